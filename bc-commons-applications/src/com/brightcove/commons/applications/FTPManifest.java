@@ -6,8 +6,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -17,8 +21,10 @@ import javax.xml.transform.TransformerException;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import com.brightcove.commons.ftp.FTPListingMode;
 import com.brightcove.commons.ftp.FTPManifestEntry;
 import com.brightcove.commons.ftp.FTPManifestEntryType;
+import com.brightcove.commons.ftp.FTPManifestFilter;
 import com.brightcove.commons.ftp.FTPManifestThread;
 import com.brightcove.commons.system.commandLine.CommandLineProgram;
 import com.brightcove.commons.xml.XalanUtils;
@@ -34,6 +40,9 @@ import com.brightcove.commons.xml.XalanUtils;
  *
  */
 public class FTPManifest extends CommandLineProgram {
+	/** Format of the FTP_MANIFEST_MODIFIED_AFTER setting */
+	public static final String MODIFIED_AFTER_FORMAT = "yyyy/MM/dd HH:mm:ss Z";
+	
 	Logger log;
 	Long   manifestTimeoutMillis;
 	
@@ -218,6 +227,32 @@ public class FTPManifest extends CommandLineProgram {
 			manifestEntries,
 			debug            // Debug
 		);
+		
+		String listingMode = getStringSetting(configDoc, "FTP_MANIFEST_LISTING_MODE");
+		if(listingMode != null){
+			ftpmt.setListingMode(FTPListingMode.valueOf(listingMode.toUpperCase()));
+		}
+		ftpmt.setNlstFileRegex(getStringSetting(configDoc, "FTP_MANIFEST_NLST_FILE_REGEX"));
+		
+		// Traversal filters
+		Date   modifiedAfter       = null;
+		String modifiedAfterString = getStringSetting(configDoc, "FTP_MANIFEST_MODIFIED_AFTER");
+		if(modifiedAfterString != null){
+			try{
+				modifiedAfter = new SimpleDateFormat(MODIFIED_AFTER_FORMAT).parse(modifiedAfterString);
+			}
+			catch(ParseException pe){
+				throw new IOException("Couldn't parse FTP_MANIFEST_MODIFIED_AFTER \"" + modifiedAfterString + "\" (expected \"" + MODIFIED_AFTER_FORMAT + "\").");
+			}
+		}
+		
+		ftpmt.setFilter(new FTPManifestFilter(
+			getListSetting(configDoc, "FTP_MANIFEST_INCLUDE_PATHS"),
+			getListSetting(configDoc, "FTP_MANIFEST_EXCLUDE_PATHS"),
+			getIntegerSetting(configDoc, "FTP_MANIFEST_MAX_DEPTH"),
+			getStringSetting(configDoc, "FTP_MANIFEST_FILE_NAME_REGEX"),
+			modifiedAfter
+		));
 	}
 	
 	public void setOutputFile(String outputFile){
@@ -227,6 +262,27 @@ public class FTPManifest extends CommandLineProgram {
 		return outputFile;
 	}
 	
+	public void setListingMode(FTPListingMode listingMode){
+		ftpmt.setListingMode(listingMode);
+	}
+	public FTPListingMode getListingMode(){
+		return ftpmt.getListingMode();
+	}
+	
+	public void setNlstFileRegex(String nlstFileRegex){
+		ftpmt.setNlstFileRegex(nlstFileRegex);
+	}
+	public String getNlstFileRegex(){
+		return ftpmt.getNlstFileRegex();
+	}
+	
+	public void setFilter(FTPManifestFilter filter){
+		ftpmt.setFilter(filter);
+	}
+	public FTPManifestFilter getFilter(){
+		return ftpmt.getFilter();
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.brightcove.commons.system.commandLine.CommandLineProgram#run(java.lang.String[])
 	 */
@@ -299,6 +355,26 @@ public class FTPManifest extends CommandLineProgram {
 		return XalanUtils.getLongFromXPath(configDoc, "/config/setting[@name='" + settingName + "']/value");
 	}
 	
+	/**
+	 * <p>
+	 *    Reads a comma separated setting as a list (null if the setting is missing)
+	 * </p>
+	 */
+	private List<String> getListSetting(Document configDoc, String settingName) throws TransformerException {
+		String value = getStringSetting(configDoc, settingName);
+		if(value == null){
+			return null;
+		}
+		
+		List<String> values = new ArrayList<String>();
+		for(String item : value.split(",")){
+			if(item.trim().length() > 0){
+				values.add(item.trim());
+			}
+		}
+		return values;
+	}
+	
 	private void init(){
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 	}
@@ -317,16 +393,20 @@ public class FTPManifest extends CommandLineProgram {
 		if(ftpmt == null){
 			usage("Worker thread must be initialized before calling doList()");
 		}
+		FTPManifestThread previous = ftpmt;
 		ftpmt = new FTPManifestThread(
-			ftpmt.getServerName(),
-			ftpmt.getServerPort(),
-			ftpmt.getUsername(),
-			ftpmt.getPassword(),
-			ftpmt.getPassiveTransfer(),
-			ftpmt.getStartDirectory(),
-			ftpmt.getProcessedDirectories(),
-			ftpmt.getDebug()
+			previous.getServerName(),
+			previous.getServerPort(),
+			previous.getUsername(),
+			previous.getPassword(),
+			previous.getPassiveTransfer(),
+			previous.getStartDirectory(),
+			previous.getProcessedDirectories(),
+			previous.getDebug()
 		);
+		ftpmt.setListingMode(previous.getListingMode());
+		ftpmt.setNlstFileRegex(previous.getNlstFileRegex());
+		ftpmt.setFilter(previous.getFilter());
 		
 		ftpmt.start();
 		
@@ -0,0 +1,570 @@
+package com.brightcove.commons.applications;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Logger;
+
+import com.brightcove.commons.system.commandLine.CommandLineProgram;
+
+/**
+ * <p>
+ *    Compares two manifests (e.g. yesterday's and today's FTPManifest
+ *    output) in bounded memory, however many lines they have.
+ * </p>
+ * 
+ * <p>
+ *    Each line is an entry.  Anything before the first tab is the entry's
+ *    key (the path); the tab separated columns after it are details such as
+ *    size, timestamp or hash.  Details are compared column by column, and
+ *    only where both lines have a non-empty value, so manifests with
+ *    different columns can still be joined.  Plain FTPManifest output (one
+ *    path per line) has no details, so against any other manifest it can
+ *    only produce added and removed entries.
+ * </p>
+ * 
+ * <p>
+ *    Both manifests are sorted with an external merge sort: at most
+ *    maxLinesInMemory lines are sorted in memory at a time and spilled to a
+ *    temporary run file.  The runs are then merged, at most mergeFanIn at a
+ *    time.  The two sorted files are merge-joined in a single pass, which
+ *    writes:<ul>
+ *        <li>added:   lines whose key is only in the new manifest</li>
+ *        <li>removed: lines whose key is only in the old manifest</li>
+ *        <li>changed: lines (from the new manifest) whose key is in both but whose shared details differ</li>
+ *    </ul>
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPManifestDiff extends CommandLineProgram {
+	/** Default number of lines sorted in memory per run */
+	public static final int DEFAULT_MAX_LINES_IN_MEMORY = 500000;
+	
+	/** Default number of runs merged at once */
+	public static final int DEFAULT_MERGE_FAN_IN = 64;
+	
+	/**
+	 * <p>
+	 *    Orders lines by key first, so a key that is a prefix of another key
+	 *    always sorts first whatever its details are
+	 * </p>
+	 */
+	private static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+		public int compare(String a, String b){
+			int result = key(a).compareTo(key(b));
+			if(result != 0){
+				return result;
+			}
+			return a.compareTo(b);
+		}
+	};
+	
+	private Logger log;
+	
+	private File    tempDirectory;
+	private Integer maxLinesInMemory;
+	private Integer mergeFanIn;
+	
+	private Long addedCount;
+	private Long removedCount;
+	private Long changedCount;
+	private Long unchangedCount;
+	
+	/**
+	 * <p>
+	 *    Main command line execution.  This should not be called from another
+	 *    class/object - it is meant only as a command line bootstrap.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Accepted command line arguments:<ul>
+	 *        <li>--old-manifest:        Older manifest file</li>
+	 *        <li>--new-manifest:        Newer manifest file</li>
+	 *        <li>--added-file:          File to write added entries to</li>
+	 *        <li>--removed-file:        File to write removed entries to</li>
+	 *        <li>--changed-file:        File to write changed entries to</li>
+	 *        <li>--temp-directory:      Directory for sort runs</li>
+	 *        <li>--max-lines-in-memory: Number of lines sorted in memory at a time</li>
+	 *    </ul>
+	 * </p>
+	 * 
+	 * @param args Command line arguments
+	 */
+	public static void main(String[] args) {
+		FTPManifestDiff diff = new FTPManifestDiff();
+		
+		diff.allowNormalArgument("old-manifest",        "--old-manifest <path>",           "--old-manifest:        Older manifest file",                           true);
+		diff.allowNormalArgument("new-manifest",        "--new-manifest <path>",           "--new-manifest:        Newer manifest file",                           true);
+		diff.allowNormalArgument("added-file",          "--added-file <path>",             "--added-file:          File to write added entries to",                false);
+		diff.allowNormalArgument("removed-file",        "--removed-file <path>",           "--removed-file:        File to write removed entries to",              false);
+		diff.allowNormalArgument("changed-file",        "--changed-file <path>",           "--changed-file:        File to write changed entries to",              false);
+		diff.allowNormalArgument("temp-directory",      "--temp-directory <path>",         "--temp-directory:      Directory for temporary sort runs",             false);
+		diff.allowNormalArgument("max-lines-in-memory", "--max-lines-in-memory <integer>", "--max-lines-in-memory: Number of lines sorted in memory at a time",   false);
+		
+		diff.setMaxNakedArguments(0);
+		diff.setMinNakedArguments(0);
+		
+		diff.run(args);
+		
+		System.out.println("Manifest diff finished.");
+		
+		System.exit(0);
+	}
+	
+	/**
+	 * <p>
+	 *    Default constructor.  Sorts in the system temporary directory.
+	 * </p>
+	 */
+	public FTPManifestDiff(){
+		this(null, DEFAULT_MAX_LINES_IN_MEMORY);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor.
+	 * </p>
+	 * 
+	 * @param tempDirectory    Directory for temporary sort runs (null for java.io.tmpdir)
+	 * @param maxLinesInMemory Maximum number of lines held in memory while sorting
+	 */
+	public FTPManifestDiff(File tempDirectory, Integer maxLinesInMemory){
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.tempDirectory    = tempDirectory;
+		this.maxLinesInMemory = maxLinesInMemory;
+		this.mergeFanIn       = DEFAULT_MERGE_FAN_IN;
+		
+		resetCounts();
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.system.commandLine.CommandLineProgram#run(java.lang.String[])
+	 */
+	public void run(String[] args){
+		setCaller(this.getClass().getCanonicalName());
+		parseArguments(args);
+		
+		if(getNormalArgument("temp-directory") != null){
+			tempDirectory = new File(getNormalArgument("temp-directory"));
+		}
+		if(getNormalArgument("max-lines-in-memory") != null){
+			maxLinesInMemory = Integer.parseInt(getNormalArgument("max-lines-in-memory"));
+		}
+		
+		try{
+			diff(
+				new File(getNormalArgument("old-manifest")),
+				new File(getNormalArgument("new-manifest")),
+				optionalFile(getNormalArgument("added-file")),
+				optionalFile(getNormalArgument("removed-file")),
+				optionalFile(getNormalArgument("changed-file"))
+			);
+		}
+		catch(Exception e){
+			usage(e);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Compares two manifests.  Any of the output files can be null if that
+	 *    kind of difference isn't wanted (it is still counted).
+	 * </p>
+	 * 
+	 * @param oldManifest Older manifest
+	 * @param newManifest Newer manifest
+	 * @param addedFile   File to write added entries to
+	 * @param removedFile File to write removed entries to
+	 * @param changedFile File to write changed entries to
+	 * @throws IOException If a manifest can't be read or an output written
+	 */
+	public void diff(File oldManifest, File newManifest, File addedFile, File removedFile, File changedFile) throws IOException {
+		resetCounts();
+		
+		File oldSorted = null;
+		File newSorted = null;
+		try{
+			log.info("Sorting old manifest \"" + oldManifest.getAbsolutePath() + "\".");
+			oldSorted = sort(oldManifest);
+			log.info("Sorting new manifest \"" + newManifest.getAbsolutePath() + "\".");
+			newSorted = sort(newManifest);
+			
+			mergeJoin(oldSorted, newSorted, addedFile, removedFile, changedFile);
+		}
+		finally{
+			deleteTempFile(oldSorted);
+			deleteTempFile(newSorted);
+		}
+		
+		log.info("Manifest diff complete: " + addedCount + " added, " + removedCount + " removed, " + changedCount + " changed, " + unchangedCount + " unchanged.");
+	}
+	
+	/**
+	 * <p>
+	 *    External merge sort of one manifest into a new temporary file.
+	 *    Exact duplicate lines are dropped.
+	 * </p>
+	 * 
+	 * @param manifest Manifest to sort
+	 * @return Temporary file holding the sorted lines (caller deletes)
+	 * @throws IOException If the manifest can't be read or a run written
+	 */
+	File sort(File manifest) throws IOException {
+		List<File> runs = new ArrayList<File>();
+		
+		BufferedReader in = openReader(manifest);
+		try{
+			List<String> lines = new ArrayList<String>();
+			String       line;
+			while((line = in.readLine()) != null){
+				if(line.length() == 0){
+					continue;
+				}
+				lines.add(line);
+				if(lines.size() >= maxLinesInMemory){
+					runs.add(writeRun(lines));
+					lines.clear();
+				}
+			}
+			if((! lines.isEmpty()) || runs.isEmpty()){
+				runs.add(writeRun(lines));
+			}
+		}
+		catch(IOException ioe){
+			for(File run : runs){
+				deleteTempFile(run);
+			}
+			throw ioe;
+		}
+		finally{
+			in.close();
+		}
+		
+		log.info("\tSorted " + runs.size() + " run(s), merging.");
+		
+		// Merge mergeFanIn runs at a time until only one is left
+		while(runs.size() > 1){
+			List<File> merged = new ArrayList<File>();
+			for(int i=0; i<runs.size(); i+=mergeFanIn){
+				List<File> group = runs.subList(i, Math.min(runs.size(), i + mergeFanIn));
+				if(group.size() == 1){
+					merged.add(group.get(0));
+				}
+				else{
+					merged.add(mergeRuns(group));
+				}
+			}
+			runs = merged;
+		}
+		
+		return runs.get(0);
+	}
+	
+	private File writeRun(List<String> lines) throws IOException {
+		Collections.sort(lines, KEY_ORDER);
+		
+		File   run = createTempFile();
+		Writer out = openWriter(run);
+		try{
+			String previous = null;
+			for(String line : lines){
+				if(! line.equals(previous)){
+					out.write(line);
+					out.write('\n');
+				}
+				previous = line;
+			}
+		}
+		finally{
+			out.close();
+		}
+		return run;
+	}
+	
+	/**
+	 * <p>
+	 *    k-way merge of sorted runs into one new run.  The input runs are
+	 *    deleted afterwards.
+	 * </p>
+	 */
+	private File mergeRuns(List<File> runs) throws IOException {
+		File                     merged  = createTempFile();
+		List<RunReader>          readers = new ArrayList<RunReader>();
+		PriorityQueue<RunReader> heap    = new PriorityQueue<RunReader>(runs.size());
+		Writer                   out     = null;
+		try{
+			for(File run : runs){
+				RunReader reader = new RunReader(run);
+				readers.add(reader);
+				if(reader.advance()){
+					heap.add(reader);
+				}
+			}
+			
+			out = openWriter(merged);
+			String previous = null;
+			while(! heap.isEmpty()){
+				RunReader reader = heap.poll();
+				if(! reader.current.equals(previous)){
+					out.write(reader.current);
+					out.write('\n');
+					previous = reader.current;
+				}
+				if(reader.advance()){
+					heap.add(reader);
+				}
+			}
+		}
+		finally{
+			if(out != null){
+				out.close();
+			}
+			for(RunReader reader : readers){
+				reader.close();
+			}
+		}
+		
+		for(File run : runs){
+			deleteTempFile(run);
+		}
+		return merged;
+	}
+	
+	/**
+	 * <p>
+	 *    Single pass over two sorted files, comparing keys
+	 * </p>
+	 */
+	private void mergeJoin(File oldSorted, File newSorted, File addedFile, File removedFile, File changedFile) throws IOException {
+		BufferedReader oldIn   = openReader(oldSorted);
+		BufferedReader newIn   = openReader(newSorted);
+		Writer         added   = (addedFile   == null) ? null : openWriter(addedFile);
+		Writer         removed = (removedFile == null) ? null : openWriter(removedFile);
+		Writer         changed = (changedFile == null) ? null : openWriter(changedFile);
+		try{
+			String oldLine = readEntry(oldIn, null);
+			String newLine = readEntry(newIn, null);
+			while((oldLine != null) || (newLine != null)){
+				int result;
+				if(oldLine == null){
+					result = 1;
+				}
+				else if(newLine == null){
+					result = -1;
+				}
+				else{
+					result = key(oldLine).compareTo(key(newLine));
+				}
+				
+				if(result < 0){
+					removedCount++;
+					writeLine(removed, oldLine);
+					oldLine = readEntry(oldIn, oldLine);
+				}
+				else if(result > 0){
+					addedCount++;
+					writeLine(added, newLine);
+					newLine = readEntry(newIn, newLine);
+				}
+				else{
+					if(sameDetails(oldLine, newLine)){
+						unchangedCount++;
+					}
+					else{
+						changedCount++;
+						writeLine(changed, newLine);
+					}
+					oldLine = readEntry(oldIn, oldLine);
+					newLine = readEntry(newIn, newLine);
+				}
+			}
+		}
+		finally{
+			oldIn.close();
+			newIn.close();
+			if(added   != null){ added.close();   }
+			if(removed != null){ removed.close(); }
+			if(changed != null){ changed.close(); }
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Reads the next line with a different key from the previous one, so
+	 *    a key listed twice only counts once
+	 * </p>
+	 */
+	private String readEntry(BufferedReader in, String previous) throws IOException {
+		String line;
+		while((line = in.readLine()) != null){
+			if((previous == null) || (! key(line).equals(key(previous)))){
+				return line;
+			}
+		}
+		return null;
+	}
+	
+	private void writeLine(Writer out, String line) throws IOException {
+		if(out != null){
+			out.write(line);
+			out.write('\n');
+		}
+	}
+	
+	private static String key(String line){
+		int tab = line.indexOf('\t');
+		if(tab < 0){
+			return line;
+		}
+		return line.substring(0, tab);
+	}
+	
+	/**
+	 * <p>
+	 *    Compares the details of two lines with the same key column by
+	 *    column.  Only columns that are present and non-empty on both sides
+	 *    are compared, so a plain FTPManifest line (path only) matches a
+	 *    LocalManifest line for the same path, and a blank hash matches any
+	 *    hash.
+	 * </p>
+	 */
+	static boolean sameDetails(String oldLine, String newLine){
+		int oldPos = oldLine.indexOf('\t');
+		int newPos = newLine.indexOf('\t');
+		while((oldPos >= 0) && (newPos >= 0)){
+			int oldEnd = oldLine.indexOf('\t', oldPos + 1);
+			int newEnd = newLine.indexOf('\t', newPos + 1);
+			String oldColumn = oldLine.substring(oldPos + 1, (oldEnd < 0) ? oldLine.length() : oldEnd);
+			String newColumn = newLine.substring(newPos + 1, (newEnd < 0) ? newLine.length() : newEnd);
+			if((oldColumn.length() > 0) && (newColumn.length() > 0) && (! oldColumn.equals(newColumn))){
+				return false;
+			}
+			oldPos = oldEnd;
+			newPos = newEnd;
+		}
+		return true;
+	}
+	
+	private File createTempFile() throws IOException {
+		File file = File.createTempFile("manifest-diff-", ".run", tempDirectory);
+		file.deleteOnExit();
+		return file;
+	}
+	
+	private void deleteTempFile(File file){
+		if((file != null) && (! file.delete())){
+			log.warning("Couldn't delete temporary file \"" + file.getAbsolutePath() + "\".");
+		}
+	}
+	
+	private static BufferedReader openReader(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"), 64 * 1024);
+	}
+	
+	private static Writer openWriter(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 64 * 1024);
+	}
+	
+	private static File optionalFile(String path){
+		if(path == null){
+			return null;
+		}
+		return new File(path);
+	}
+	
+	private void resetCounts(){
+		addedCount     = 0l;
+		removedCount   = 0l;
+		changedCount   = 0l;
+		unchangedCount = 0l;
+	}
+	
+	public Long getAddedCount(){
+		return addedCount;
+	}
+	
+	public Long getRemovedCount(){
+		return removedCount;
+	}
+	
+	public Long getChangedCount(){
+		return changedCount;
+	}
+	
+	public Long getUnchangedCount(){
+		return unchangedCount;
+	}
+	
+	public File getTempDirectory(){
+		return tempDirectory;
+	}
+	
+	public void setTempDirectory(File tempDirectory){
+		this.tempDirectory = tempDirectory;
+	}
+	
+	public Integer getMaxLinesInMemory(){
+		return maxLinesInMemory;
+	}
+	
+	public void setMaxLinesInMemory(Integer maxLinesInMemory){
+		this.maxLinesInMemory = maxLinesInMemory;
+	}
+	
+	public Integer getMergeFanIn(){
+		return mergeFanIn;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the maximum number of run files open at once while merging
+	 * </p>
+	 * 
+	 * @param mergeFanIn Number of runs merged per pass (at least 2)
+	 */
+	public void setMergeFanIn(Integer mergeFanIn){
+		this.mergeFanIn = Math.max(2, mergeFanIn);
+	}
+	
+	/**
+	 * <p>
+	 *    One sorted run being merged, ordered by its current line
+	 * </p>
+	 */
+	private static class RunReader implements Comparable<RunReader> {
+		BufferedReader in;
+		String         current;
+		
+		RunReader(File run) throws IOException {
+			in      = openReader(run);
+			current = null;
+		}
+		
+		boolean advance() throws IOException {
+			current = in.readLine();
+			return (current != null);
+		}
+		
+		void close() throws IOException {
+			in.close();
+		}
+		
+		public int compareTo(RunReader other){
+			return KEY_ORDER.compare(current, other.current);
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package com.brightcove.commons.applications;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.brightcove.commons.account.objects.BrightcoveAccount;
+import com.brightcove.commons.ftp.FTPConcurrencyController;
+import com.brightcove.commons.ftp.FTPUploaderThread;
+import com.brightcove.commons.ftp.UploadMapping;
+
+/**
+ * <p>
+ *    Runs the FTP uploads for many Brightcove accounts inside one JVM,
+ *    instead of one FTPUploader process per account.  Each account logs in
+ *    with its own ftpUsername/ftpPassword.
+ * </p>
+ * 
+ * <p>
+ *    Uploads are split into sessions of at most filesPerSession files; each
+ *    session is one FTP connection.  At most globalConnections sessions run
+ *    at once, and at most perAccountConnections for any one account.  Free
+ *    connections are handed out round robin across the accounts that still
+ *    have work, so an account with a huge backlog can't starve the others.
+ * </p>
+ * 
+ * <p>
+ *    Example usage:
+ *    <pre>
+ *    FTPUploadOrchestrator orchestrator = new FTPUploadOrchestrator("upload.brightcove.com", 21, true, false, 40, 2, 25, false);
+ *    for(BrightcoveAccount account : accounts){
+ *        orchestrator.addAccount(account, uploadsFor(account));
+ *    }
+ *    orchestrator.run();
+ *    </pre>
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPUploadOrchestrator {
+	private Logger log;
+	
+	private String  serverName;
+	private Integer serverPort;
+	private Boolean passiveTransfer;
+	private Boolean removeSource;
+	private Integer globalConnections;
+	private Integer perAccountConnections;
+	private Integer filesPerSession;
+	private Boolean debug;
+	
+	private LinkedList<AccountQueue>       accountQueues;
+	private Map<Long, List<Exception>>     failures;
+	private Map<Long, List<UploadMapping>> failedMappings;
+	private Integer                        activeSessions;
+	
+	private FTPConcurrencyController concurrencyController;
+	
+	/**
+	 * <p>
+	 *    Constructor.
+	 * </p>
+	 * 
+	 * @param serverName            Server host name or ip address to connect to
+	 * @param serverPort            Server port to connect to
+	 * @param passiveTransfer       Use passive transfer mode if true instead of active
+	 * @param removeSource          Remove local files after uploading
+	 * @param globalConnections     Maximum number of concurrent connections across all accounts
+	 * @param perAccountConnections Maximum number of concurrent connections for any one account
+	 * @param filesPerSession       Maximum number of files uploaded per connection
+	 * @param debug                 Verbose debugging messages on or off
+	 */
+	public FTPUploadOrchestrator(String serverName, Integer serverPort, Boolean passiveTransfer, Boolean removeSource, Integer globalConnections, Integer perAccountConnections, Integer filesPerSession, Boolean debug) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.serverName            = serverName;
+		this.serverPort            = serverPort;
+		this.passiveTransfer       = passiveTransfer;
+		this.removeSource          = removeSource;
+		this.globalConnections     = globalConnections;
+		this.perAccountConnections = perAccountConnections;
+		this.filesPerSession       = filesPerSession;
+		this.debug                 = debug;
+		
+		accountQueues  = new LinkedList<AccountQueue>();
+		failures       = new LinkedHashMap<Long, List<Exception>>();
+		failedMappings = new LinkedHashMap<Long, List<UploadMapping>>();
+		activeSessions = 0;
+		
+		concurrencyController = null;
+	}
+	
+	/**
+	 * <p>
+	 *    Adds an account and the files to upload for it.  Can be called more
+	 *    than once for the same account.
+	 * </p>
+	 * 
+	 * @param account Account to upload as (must have FTP credentials and a
+	 *                publisher id, which identifies it in the results)
+	 * @param uploads Files to upload
+	 * @throws IllegalArgumentException If the account, its publisher id or
+	 *                                  the uploads are null
+	 */
+	public synchronized void addAccount(BrightcoveAccount account, List<UploadMapping> uploads){
+		if((account == null) || (account.getPublisherId() == null)){
+			throw new IllegalArgumentException("Account and its publisher id must not be null.");
+		}
+		if(uploads == null){
+			throw new IllegalArgumentException("Uploads must not be null.");
+		}
+		
+		for(AccountQueue queue : accountQueues){
+			if(queue.account.getPublisherId().equals(account.getPublisherId())){
+				queue.pending.addAll(uploads);
+				return;
+			}
+		}
+		
+		AccountQueue queue = new AccountQueue(account);
+		queue.pending.addAll(uploads);
+		accountQueues.add(queue);
+	}
+	
+	/**
+	 * <p>
+	 *    Uploads everything that has been added, blocking until every
+	 *    session has finished.  Failures are recorded per account rather
+	 *    than thrown - see getFailures() and getFailedMappings().
+	 * </p>
+	 * 
+	 * @throws InterruptedException If interrupted while waiting for sessions
+	 */
+	public void run() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(globalConnections);
+		
+		try{
+			synchronized(this){
+				while(true){
+					// Start as many sessions as the caps allow
+					AccountQueue next;
+					while((activeSessions < getConnectionLimit()) && ((next = nextEligibleAccount()) != null)){
+						executor.execute(startSession(next));
+					}
+					
+					if(activeSessions == 0){
+						// Nothing running and nothing eligible - all done
+						break;
+					}
+					
+					if(concurrencyController != null){
+						// Wake up periodically in case the limit has grown
+						concurrencyController.recordActiveSessions(activeSessions);
+						wait(concurrencyController.getSampleIntervalMillis());
+						concurrencyController.adjustIfDue();
+					}
+					else{
+						wait();
+					}
+				}
+			}
+		}
+		finally{
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		
+		log.info("Orchestrated upload complete for " + accountQueues.size() + " account(s), " + failures.size() + " with failures.");
+	}
+	
+	private int getConnectionLimit(){
+		if(concurrencyController == null){
+			return globalConnections;
+		}
+		return Math.min(globalConnections, concurrencyController.getCurrentLimit());
+	}
+	
+	/**
+	 * <p>
+	 *    Round robin pick of the next account with pending files and a free
+	 *    connection slot.  The chosen account moves to the back of the line.
+	 * </p>
+	 */
+	private AccountQueue nextEligibleAccount(){
+		for(int i=0; i<accountQueues.size(); i++){
+			AccountQueue queue = accountQueues.removeFirst();
+			accountQueues.addLast(queue);
+			
+			if((! queue.pending.isEmpty()) && (queue.activeSessions < perAccountConnections)){
+				return queue;
+			}
+		}
+		return null;
+	}
+	
+	private Runnable startSession(final AccountQueue queue){
+		final List<UploadMapping> batch = new ArrayList<UploadMapping>();
+		while((batch.size() < filesPerSession) && (! queue.pending.isEmpty())){
+			batch.add(queue.pending.removeFirst());
+		}
+		
+		queue.activeSessions++;
+		activeSessions++;
+		
+		final BrightcoveAccount account = queue.account;
+		log.info("Starting session for account '" + account.getPublisherId() + "' with " + batch.size() + " file(s) (" + activeSessions + " active).");
+		
+		return new Runnable() {
+			public void run() {
+				FTPUploaderThread ftput = new FTPUploaderThread(
+					serverName,
+					serverPort,
+					account.getFtpUsername(),
+					account.getFtpPassword(),
+					false,           // Skip transfer
+					removeSource,
+					passiveTransfer,
+					batch,
+					debug
+				);
+				ftput.setConcurrencyController(concurrencyController);
+				
+				try{
+					// Run on this pool thread rather than starting another one
+					ftput.run();
+				}
+				catch(RuntimeException re){
+					ftput.setException(re);
+				}
+				
+				sessionFinished(queue, batch, ftput.getException());
+			}
+		};
+	}
+	
+	private synchronized void sessionFinished(AccountQueue queue, List<UploadMapping> batch, Exception exception){
+		queue.activeSessions--;
+		activeSessions--;
+		
+		if(exception != null){
+			Long publisherId = queue.account.getPublisherId();
+			log.severe("Session for account '" + publisherId + "' failed: '" + exception + "'.");
+			
+			if(! failures.containsKey(publisherId)){
+				failures.put(publisherId, new ArrayList<Exception>());
+				failedMappings.put(publisherId, new ArrayList<UploadMapping>());
+			}
+			failures.get(publisherId).add(exception);
+			// The uploader stops at the first error, so the whole session is
+			// treated as suspect
+			failedMappings.get(publisherId).addAll(batch);
+		}
+		
+		notifyAll();
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the exceptions thrown by failed sessions, keyed by publisher id
+	 * </p>
+	 * 
+	 * @return Map of publisher id to session exceptions
+	 */
+	public synchronized Map<Long, List<Exception>> getFailures(){
+		return failures;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the files from failed sessions (which may have been
+	 *    partially uploaded), keyed by publisher id
+	 * </p>
+	 * 
+	 * @return Map of publisher id to upload mappings to retry
+	 */
+	public synchronized Map<Long, List<UploadMapping>> getFailedMappings(){
+		return failedMappings;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the number of sessions currently running
+	 * </p>
+	 * 
+	 * @return Number of open upload sessions
+	 */
+	public synchronized Integer getActiveSessions(){
+		return activeSessions;
+	}
+	
+	public FTPConcurrencyController getConcurrencyController(){
+		return concurrencyController;
+	}
+	
+	/**
+	 * <p>
+	 *    Lets a controller adjust the number of sessions at runtime.  The
+	 *    global cap still applies as an upper bound.
+	 * </p>
+	 * 
+	 * @param concurrencyController Controller to consult (null for a fixed globalConnections)
+	 */
+	public void setConcurrencyController(FTPConcurrencyController concurrencyController){
+		this.concurrencyController = concurrencyController;
+	}
+	
+	public Integer getGlobalConnections(){
+		return globalConnections;
+	}
+	
+	public Integer getPerAccountConnections(){
+		return perAccountConnections;
+	}
+	
+	public Integer getFilesPerSession(){
+		return filesPerSession;
+	}
+	
+	/**
+	 * <p>
+	 *    Files still waiting to be uploaded for one account, plus the number
+	 *    of sessions it currently has open
+	 * </p>
+	 */
+	private static class AccountQueue {
+		BrightcoveAccount         account;
+		LinkedList<UploadMapping> pending;
+		int                       activeSessions;
+		
+		AccountQueue(BrightcoveAccount account){
+			this.account        = account;
+			this.pending        = new LinkedList<UploadMapping>();
+			this.activeSessions = 0;
+		}
+	}
+}
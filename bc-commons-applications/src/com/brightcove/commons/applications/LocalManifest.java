@@ -0,0 +1,519 @@
+package com.brightcove.commons.applications;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.brightcove.commons.system.commandLine.CommandLineProgram;
+
+/**
+ * <p>
+ *    Generates a manifest of the files in a local directory tree (e.g. an
+ *    upload staging area), to reconcile against FTPManifest output.
+ * </p>
+ * 
+ * <p>
+ *    Each line of the output is "path&lt;TAB&gt;size&lt;TAB&gt;mtime&lt;TAB&gt;hash",
+ *    sorted by path.  Paths are relative to the root directory, prefixed with
+ *    pathPrefix (default "/"), so they line up with the remote paths in an
+ *    FTP manifest.  FTPManifest only writes the path, so FTPManifestDiff
+ *    joins the two on path alone and reports files added or removed; the
+ *    size, mtime and hash columns are only compared against another local
+ *    manifest.
+ * </p>
+ * 
+ * <p>
+ *    Directories are walked and files hashed on a pool of worker threads.
+ *    If a previous manifest is given, files whose size and mtime haven't
+ *    changed reuse the previous hash instead of being read again.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class LocalManifest extends CommandLineProgram {
+	/** Default digest used to hash files */
+	public static final String DEFAULT_DIGEST_ALGORITHM = "MD5";
+	
+	private Logger log;
+	
+	private File    rootDirectory;
+	private File    outputFile;
+	private File    previousManifest;
+	private String  digestAlgorithm;
+	private Integer threads;
+	private String  pathPrefix;
+	
+	private Map<String, LocalManifestEntry> previousEntries;
+	private Map<String, LocalManifestEntry> entries;
+	private Set<String>                     visitedDirectories;
+	private Map<String, Exception>          failures;
+	
+	private ExecutorService executor;
+	private AtomicLong      pendingTasks;
+	private AtomicLong      hashedCount;
+	private AtomicLong      reusedCount;
+	
+	/**
+	 * <p>
+	 *    Main command line execution.  This should not be called from another
+	 *    class/object - it is meant only as a command line bootstrap.
+	 * </p>
+	 * 
+	 * <p>
+	 *    Accepted command line arguments:<ul>
+	 *        <li>--root-directory:    Local directory to inventory</li>
+	 *        <li>--output-file:       File to write the manifest to</li>
+	 *        <li>--previous-manifest: Earlier output to reuse hashes from</li>
+	 *        <li>--digest-algorithm:  Hash algorithm (default MD5)</li>
+	 *        <li>--threads:           Number of worker threads</li>
+	 *        <li>--path-prefix:       Prefix for paths in the manifest (default "/")</li>
+	 *    </ul>
+	 * </p>
+	 * 
+	 * @param args Command line arguments
+	 */
+	public static void main(String[] args) {
+		LocalManifest lm = new LocalManifest();
+		
+		lm.allowNormalArgument("root-directory",    "--root-directory <path>",      "--root-directory:    Local directory to inventory",                true);
+		lm.allowNormalArgument("output-file",       "--output-file <path>",         "--output-file:       File to write the manifest to",               true);
+		lm.allowNormalArgument("previous-manifest", "--previous-manifest <path>",   "--previous-manifest: Earlier output to reuse hashes from",         false);
+		lm.allowNormalArgument("digest-algorithm",  "--digest-algorithm <string>",  "--digest-algorithm:  Hash algorithm, e.g. MD5 or SHA-1",           false);
+		lm.allowNormalArgument("threads",           "--threads <integer>",          "--threads:           Number of worker threads",                    false);
+		lm.allowNormalArgument("path-prefix",       "--path-prefix <string>",       "--path-prefix:       Prefix for paths in the manifest",            false);
+		
+		lm.setMaxNakedArguments(0);
+		lm.setMinNakedArguments(0);
+		
+		lm.run(args);
+		
+		System.out.println("Local manifest generation finished.");
+		
+		System.exit(0);
+	}
+	
+	/**
+	 * <p>
+	 *    Default constructor.  Not intended to be called by other
+	 *    classes/objects - for command line use mainly.
+	 * </p>
+	 */
+	public LocalManifest(){
+		this(null, null, null, DEFAULT_DIGEST_ALGORITHM, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor specifying everything.
+	 * </p>
+	 * 
+	 * @param rootDirectory    Local directory to inventory
+	 * @param outputFile       File to write the manifest to
+	 * @param previousManifest Earlier output to reuse hashes from (null to hash everything)
+	 * @param digestAlgorithm  MessageDigest algorithm name
+	 * @param threads          Number of worker threads
+	 */
+	public LocalManifest(File rootDirectory, File outputFile, File previousManifest, String digestAlgorithm, Integer threads){
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.rootDirectory    = rootDirectory;
+		this.outputFile       = outputFile;
+		this.previousManifest = previousManifest;
+		this.digestAlgorithm  = digestAlgorithm;
+		this.threads          = threads;
+		this.pathPrefix       = "/";
+		
+		entries  = new TreeMap<String, LocalManifestEntry>();
+		failures = new TreeMap<String, Exception>();
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.system.commandLine.CommandLineProgram#run(java.lang.String[])
+	 */
+	public void run(String[] args){
+		setCaller(this.getClass().getCanonicalName());
+		parseArguments(args);
+		
+		rootDirectory = new File(getNormalArgument("root-directory"));
+		outputFile    = new File(getNormalArgument("output-file"));
+		
+		if(getNormalArgument("previous-manifest") != null){
+			previousManifest = new File(getNormalArgument("previous-manifest"));
+		}
+		if(getNormalArgument("digest-algorithm") != null){
+			digestAlgorithm = getNormalArgument("digest-algorithm");
+		}
+		if(getNormalArgument("threads") != null){
+			threads = Integer.parseInt(getNormalArgument("threads"));
+		}
+		if(getNormalArgument("path-prefix") != null){
+			pathPrefix = getNormalArgument("path-prefix");
+		}
+		
+		try{
+			generate();
+		}
+		catch(Exception e){
+			usage(e);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Walks the tree, hashes the files and writes the manifest (if an
+	 *    output file is set).  Files that couldn't be read are left out of
+	 *    the manifest - see getFailures().
+	 * </p>
+	 * 
+	 * @throws IOException If the root can't be read or the manifest written
+	 * @throws NoSuchAlgorithmException If the digest algorithm isn't available
+	 * @throws InterruptedException If interrupted while waiting for workers
+	 */
+	public void generate() throws IOException, NoSuchAlgorithmException, InterruptedException {
+		if(! rootDirectory.isDirectory()){
+			throw new IOException("Root directory \"" + rootDirectory.getAbsolutePath() + "\" doesn't exist.");
+		}
+		
+		// Fail now rather than in every worker
+		MessageDigest.getInstance(digestAlgorithm);
+		
+		previousEntries = readManifest(previousManifest);
+		
+		Map<String, LocalManifestEntry> found  = new ConcurrentHashMap<String, LocalManifestEntry>();
+		Map<String, Exception>          failed = new ConcurrentHashMap<String, Exception>();
+		visitedDirectories = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		pendingTasks       = new AtomicLong(0);
+		hashedCount        = new AtomicLong(0);
+		reusedCount        = new AtomicLong(0);
+		
+		log.info("Generating a manifest for \"" + rootDirectory.getAbsolutePath() + "\" with " + threads + " thread(s).");
+		
+		executor = Executors.newFixedThreadPool(threads);
+		try{
+			submit(new DirectoryTask(rootDirectory, pathPrefix, found, failed));
+			synchronized(pendingTasks){
+				while(pendingTasks.get() > 0){
+					pendingTasks.wait();
+				}
+			}
+		}
+		finally{
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		
+		TreeMap<String, LocalManifestEntry> sortedEntries = new TreeMap<String, LocalManifestEntry>(found);
+		entries  = sortedEntries;
+		failures = new TreeMap<String, Exception>(failed);
+		
+		log.info("Local manifest complete: " + entries.size() + " file(s), " + hashedCount + " hashed, " + reusedCount + " unchanged, " + failures.size() + " failed.");
+		
+		writeManifest(outputFile, sortedEntries);
+	}
+	
+	private void submit(final Runnable task){
+		pendingTasks.incrementAndGet();
+		executor.execute(new Runnable() {
+			public void run() {
+				try{
+					task.run();
+				}
+				finally{
+					synchronized(pendingTasks){
+						if(pendingTasks.decrementAndGet() == 0){
+							pendingTasks.notifyAll();
+						}
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * <p>
+	 *    Lists one directory, queueing its subdirectories and files
+	 * </p>
+	 */
+	private class DirectoryTask implements Runnable {
+		File                            directory;
+		String                          path;
+		Map<String, LocalManifestEntry> found;
+		Map<String, Exception>          failed;
+		
+		DirectoryTask(File directory, String path, Map<String, LocalManifestEntry> found, Map<String, Exception> failed){
+			this.directory = directory;
+			this.path      = path.endsWith("/") ? path : path + "/";
+			this.found     = found;
+			this.failed    = failed;
+		}
+		
+		public void run() {
+			try{
+				// Don't loop forever on symbolic links back up the tree
+				if(! visitedDirectories.add(directory.getCanonicalPath())){
+					return;
+				}
+				
+				File[] children = directory.listFiles();
+				if(children == null){
+					throw new IOException("Couldn't list directory \"" + directory.getAbsolutePath() + "\".");
+				}
+				
+				for(File child : children){
+					String childPath = path + child.getName();
+					if(child.isDirectory()){
+						submit(new DirectoryTask(child, childPath, found, failed));
+					}
+					else if(child.isFile()){
+						submit(new FileTask(child, childPath, found, failed));
+					}
+				}
+			}
+			catch(Exception e){
+				log.severe("Couldn't traverse \"" + directory.getAbsolutePath() + "\": '" + e + "'.");
+				failed.put(path, e);
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Hashes one file, unless the previous manifest already has it with
+	 *    the same size and mtime
+	 * </p>
+	 */
+	private class FileTask implements Runnable {
+		File                            file;
+		String                          path;
+		Map<String, LocalManifestEntry> found;
+		Map<String, Exception>          failed;
+		
+		FileTask(File file, String path, Map<String, LocalManifestEntry> found, Map<String, Exception> failed){
+			this.file   = file;
+			this.path   = path;
+			this.found  = found;
+			this.failed = failed;
+		}
+		
+		public void run() {
+			try{
+				long size  = file.length();
+				long mtime = file.lastModified();
+				
+				LocalManifestEntry previous = previousEntries.get(path);
+				if((previous != null) && (previous.size == size) && (previous.mtime == mtime)){
+					found.put(path, previous);
+					reusedCount.incrementAndGet();
+					return;
+				}
+				
+				found.put(path, new LocalManifestEntry(path, size, mtime, hash(file)));
+				hashedCount.incrementAndGet();
+			}
+			catch(Exception e){
+				log.severe("Couldn't hash \"" + file.getAbsolutePath() + "\": '" + e + "'.");
+				failed.put(path, e);
+			}
+		}
+	}
+	
+	private String hash(File file) throws IOException, NoSuchAlgorithmException {
+		MessageDigest digest = MessageDigest.getInstance(digestAlgorithm);
+		byte[]        buffer = new byte[64 * 1024];
+		
+		InputStream in = new FileInputStream(file);
+		try{
+			int read;
+			while((read = in.read(buffer)) >= 0){
+				digest.update(buffer, 0, read);
+			}
+		}
+		finally{
+			in.close();
+		}
+		
+		StringBuilder hex = new StringBuilder();
+		for(byte b : digest.digest()){
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+	
+	/**
+	 * <p>
+	 *    Reads a manifest written by this class.  Returns an empty map if the
+	 *    file is null or doesn't exist.
+	 * </p>
+	 * 
+	 * @param manifest Manifest file to read
+	 * @return Map of path to entry
+	 * @throws IOException If the manifest can't be read
+	 */
+	public static Map<String, LocalManifestEntry> readManifest(File manifest) throws IOException {
+		Map<String, LocalManifestEntry> result = new HashMap<String, LocalManifestEntry>();
+		if((manifest == null) || (! manifest.exists())){
+			return result;
+		}
+		
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+		try{
+			String line;
+			while((line = in.readLine()) != null){
+				String[] fields = line.split("\t");
+				if(fields.length < 4){
+					// Not ours (e.g. a plain path list) - nothing to reuse
+					continue;
+				}
+				try{
+					result.put(fields[0], new LocalManifestEntry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+				}
+				catch(NumberFormatException nfe){
+					continue;
+				}
+			}
+		}
+		finally{
+			in.close();
+		}
+		return result;
+	}
+	
+	private void writeManifest(File manifest, SortedMap<String, LocalManifestEntry> sortedEntries) throws IOException {
+		if(manifest == null){
+			return;
+		}
+		
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifest), "UTF-8"));
+		try{
+			for(LocalManifestEntry entry : sortedEntries.values()){
+				out.write(entry.toString());
+				out.write('\n');
+			}
+		}
+		finally{
+			out.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the entries found by the last generate(), sorted by path
+	 * </p>
+	 * 
+	 * @return Map of path to entry
+	 */
+	public Map<String, LocalManifestEntry> getEntries(){
+		return entries;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the paths that couldn't be listed or hashed by the last
+	 *    generate()
+	 * </p>
+	 * 
+	 * @return Map of path to exception
+	 */
+	public Map<String, Exception> getFailures(){
+		return failures;
+	}
+	
+	public File getRootDirectory(){
+		return rootDirectory;
+	}
+	
+	public void setRootDirectory(File rootDirectory){
+		this.rootDirectory = rootDirectory;
+	}
+	
+	public File getOutputFile(){
+		return outputFile;
+	}
+	
+	public void setOutputFile(File outputFile){
+		this.outputFile = outputFile;
+	}
+	
+	public File getPreviousManifest(){
+		return previousManifest;
+	}
+	
+	public void setPreviousManifest(File previousManifest){
+		this.previousManifest = previousManifest;
+	}
+	
+	public String getDigestAlgorithm(){
+		return digestAlgorithm;
+	}
+	
+	public void setDigestAlgorithm(String digestAlgorithm){
+		this.digestAlgorithm = digestAlgorithm;
+	}
+	
+	public Integer getThreads(){
+		return threads;
+	}
+	
+	public void setThreads(Integer threads){
+		this.threads = threads;
+	}
+	
+	public String getPathPrefix(){
+		return pathPrefix;
+	}
+	
+	public void setPathPrefix(String pathPrefix){
+		this.pathPrefix = pathPrefix;
+	}
+	
+	/**
+	 * <p>
+	 *    One file in a local manifest
+	 * </p>
+	 */
+	public static class LocalManifestEntry {
+		private String path;
+		private long   size;
+		private long   mtime;
+		private String hash;
+		
+		LocalManifestEntry(String path, long size, long mtime, String hash){
+			this.path  = path;
+			this.size  = size;
+			this.mtime = mtime;
+			this.hash  = hash;
+		}
+		
+		public String getPath()  { return path;  }
+		public long   getSize()  { return size;  }
+		public long   getMtime() { return mtime; }
+		public String getHash()  { return hash;  }
+		
+		public String toString(){
+			return path + "\t" + size + "\t" + mtime + "\t" + hash;
+		}
+	}
+}
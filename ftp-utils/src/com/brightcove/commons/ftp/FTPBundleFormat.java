@@ -0,0 +1,23 @@
+package com.brightcove.commons.ftp;
+
+/**
+ * <p>
+ *    Archive formats FTPBundleUploaderThread can pack small files into
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public enum FTPBundleFormat {
+	TAR(".tar"), ZIP(".zip");
+	
+	private final String extension;
+	
+	FTPBundleFormat(String extension){
+		this.extension = extension;
+	}
+	
+	public String getExtension(){
+		return extension;
+	}
+}
@@ -0,0 +1,350 @@
+package com.brightcove.commons.ftp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+/**
+ * <p>
+ *    Upload variant for folders with large numbers of small files.  Files no
+ *    bigger than smallFileBytes are packed into TAR or ZIP bundles of about
+ *    targetBundleBytes each, streamed straight into the data connection.
+ *    Larger files are uploaded as normal.  This is only useful when the
+ *    receiving side unpacks the bundles.
+ * </p>
+ * 
+ * <p>
+ *    Every bundle is followed by a sidecar index (bundle name + ".index")
+ *    listing one "entry name&lt;TAB&gt;size&lt;TAB&gt;destination" line per
+ *    packed file.
+ * </p>
+ * 
+ * <p>
+ *    If a bundle can't be written in full (a file can't be read, or the
+ *    data connection fails), the transfer is abandoned without finishing
+ *    the archive, the partial bundle is deleted from the server and its
+ *    files are recorded as failed.  Their sources are never removed.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPBundleUploaderThread extends FTPThread {
+	private List<UploadMapping> uploadMappings;
+	private String              remoteDirectory;
+	private String              bundlePrefix;
+	private FTPBundleFormat     bundleFormat;
+	private Long                smallFileBytes;
+	private Long                targetBundleBytes;
+	
+	private Map<String, List<UploadMapping>> bundleContents;
+	private List<UploadMapping>              failedMappings;
+	
+	public FTPBundleUploaderThread(String serverName, Integer serverPort, String username, String password, Boolean removeSource, Boolean passiveTransfer, List<UploadMapping> uploadMappings, String remoteDirectory, String bundlePrefix, FTPBundleFormat bundleFormat, Long smallFileBytes, Long targetBundleBytes, Boolean debug) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.uploadMappings    = uploadMappings;
+		this.remoteDirectory   = remoteDirectory;
+		this.bundlePrefix      = bundlePrefix;
+		this.bundleFormat      = bundleFormat;
+		this.smallFileBytes    = smallFileBytes;
+		this.targetBundleBytes = targetBundleBytes;
+		
+		this.serverName          = serverName;
+		this.serverPort          = serverPort;
+		this.username            = username;
+		this.password            = password;
+		this.skipTransfer        = false;
+		this.removeSource        = removeSource;
+		this.passiveTransfer     = passiveTransfer;
+		this.debug               = debug;
+		
+		bundleContents = new LinkedHashMap<String, List<UploadMapping>>();
+		failedMappings = new ArrayList<UploadMapping>();
+		
+		exception = null;
+		
+		ftpc = new FTPClient();
+	}
+	
+	public void run() {
+		ftpc = new FTPClient();
+		
+		if(! connect()){
+			// Exception trying to connect
+			return;
+		}
+		
+		try{
+			log.info("Uploading to server \"" + serverName + "\".");
+			
+			// Group the small files into bundles, upload everything else as is
+			List<List<UploadMapping>> bundles     = new ArrayList<List<UploadMapping>>();
+			List<UploadMapping>       current     = new ArrayList<UploadMapping>();
+			long                      currentSize = 0;
+			for(UploadMapping uploadMapping : uploadMappings){
+				File localFile = uploadMapping.getSource();
+				long size      = localFile.length();
+				
+				if(size > smallFileBytes){
+					uploadFile(uploadMapping);
+					continue;
+				}
+				
+				if((! current.isEmpty()) && (currentSize + size > targetBundleBytes)){
+					bundles.add(current);
+					current     = new ArrayList<UploadMapping>();
+					currentSize = 0;
+				}
+				current.add(uploadMapping);
+				currentSize += size;
+			}
+			if(! current.isEmpty()){
+				bundles.add(current);
+			}
+			
+			String runId = Long.toString(System.currentTimeMillis());
+			for(int i=0; i<bundles.size(); i++){
+				try{
+					uploadBundle(bundlePrefix + "-" + runId + "-" + (i + 1) + bundleFormat.getExtension(), bundles.get(i));
+				}
+				catch(IOException ioe){
+					log.info("Exception thrown - '" + ioe + "'.");
+					exception = ioe;
+					recordFailure(ioe);
+					failedMappings.addAll(bundles.get(i));
+				}
+			}
+			
+			printFTPCommandInfo("end of file transfers");
+		}
+		catch(Exception e){
+			exception = e;
+			recordFailure(e);
+		}
+		
+		disconnect();
+	}
+	
+	private void uploadFile(UploadMapping uploadMapping) throws IOException {
+		File   localFile  = uploadMapping.getSource();
+		String remoteFile = uploadMapping.getDestination();
+		
+		log.info("\tUploading file \"" + localFile.getAbsolutePath() + "\".");
+		
+		FileInputStream fis = new FileInputStream(localFile);
+		try{
+			if(! ftpc.storeFile(remoteFile, fis)){
+				printFTPCommandInfo("store file (" + remoteFile + ")");
+				throw new IOException("Couldn't upload file \"" + localFile.getAbsolutePath() + "\".");
+			}
+			printFTPCommandInfo("store file (" + remoteFile + ")");
+		}
+		finally{
+			fis.close();
+		}
+		
+		removeSourceFile(localFile);
+	}
+	
+	private void uploadBundle(String bundleName, List<UploadMapping> contents) throws IOException {
+		String remoteBundle = remotePath(bundleName);
+		log.info("\tUploading bundle \"" + remoteBundle + "\" (" + contents.size() + " files).");
+		
+		OutputStream os = ftpc.storeFileStream(remoteBundle);
+		printFTPCommandInfo("store file stream (" + remoteBundle + ")");
+		if(os == null){
+			throw new IOException("Couldn't open data connection for bundle \"" + remoteBundle + "\".");
+		}
+		
+		StringBuilder   index  = new StringBuilder();
+		FTPBundleWriter writer = new FTPBundleWriter(bundleFormat, new BufferedOutputStream(os, 64 * 1024));
+		try{
+			for(UploadMapping uploadMapping : contents){
+				String entryName = entryName(uploadMapping);
+				File   localFile = uploadMapping.getSource();
+				
+				writer.addFile(entryName, localFile);
+				index.append(entryName).append('\t').append(localFile.length()).append('\t').append(uploadMapping.getDestination()).append('\n');
+			}
+			
+			// Only a complete bundle gets its trailer
+			writer.close();
+		}
+		catch(IOException ioe){
+			abandon(remoteBundle, writer);
+			throw ioe;
+		}
+		
+		if(! ftpc.completePendingCommand()){
+			printFTPCommandInfo("complete store (" + remoteBundle + ")");
+			deleteRemoteFile(remoteBundle);
+			throw new IOException("Upload of bundle \"" + remoteBundle + "\" failed.");
+		}
+		printFTPCommandInfo("complete store (" + remoteBundle + ")");
+		
+		String remoteIndex = remoteBundle + ".index";
+		if(! ftpc.storeFile(remoteIndex, new ByteArrayInputStream(index.toString().getBytes("UTF-8")))){
+			printFTPCommandInfo("store file (" + remoteIndex + ")");
+			deleteRemoteFile(remoteBundle);
+			throw new IOException("Couldn't upload bundle index \"" + remoteIndex + "\".");
+		}
+		printFTPCommandInfo("store file (" + remoteIndex + ")");
+		
+		bundleContents.put(remoteBundle, contents);
+		
+		for(UploadMapping uploadMapping : contents){
+			removeSourceFile(uploadMapping.getSource());
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Drops the data connection of a failed bundle without writing the
+	 *    archive trailer, reads the server's reply to the STOR and removes
+	 *    the truncated bundle it left behind
+	 * </p>
+	 */
+	private void abandon(String remoteBundle, FTPBundleWriter writer){
+		try{
+			writer.abort();
+		}
+		catch(IOException ioe){
+			log.info("Exception thrown closing failed transfer - '" + ioe + "'.");
+		}
+		try{
+			ftpc.completePendingCommand();
+			printFTPCommandInfo("complete store (" + remoteBundle + ")");
+		}
+		catch(IOException ioe){
+			log.info("Exception thrown closing failed transfer - '" + ioe + "'.");
+		}
+		deleteRemoteFile(remoteBundle);
+	}
+	
+	private void deleteRemoteFile(String remoteFile){
+		try{
+			ftpc.deleteFile(remoteFile);
+			printFTPCommandInfo("delete partial file (" + remoteFile + ")");
+		}
+		catch(IOException ioe){
+			log.info("Exception thrown deleting partial file - '" + ioe + "'.");
+		}
+	}
+	
+	private void removeSourceFile(File localFile) throws IOException {
+		if(removeSource){
+			log.info("\tRemoving source file \"" + localFile.getAbsolutePath() + "\" per request.");
+			if(! localFile.delete()){
+				throw new IOException("Couldn't delete file \"" + localFile.getAbsolutePath() + "\".");
+			}
+		}
+	}
+	
+	private String remotePath(String name){
+		if(remoteDirectory == null){
+			return name;
+		}
+		if(remoteDirectory.endsWith("/")){
+			return remoteDirectory + name;
+		}
+		return remoteDirectory + "/" + name;
+	}
+	
+	private String entryName(UploadMapping uploadMapping){
+		// Entries are relative to the bundle's directory
+		String destination = uploadMapping.getDestination();
+		if(destination == null){
+			return uploadMapping.getSource().getName();
+		}
+		if((remoteDirectory != null) && destination.startsWith(remoteDirectory)){
+			destination = destination.substring(remoteDirectory.length());
+		}
+		while(destination.startsWith("/")){
+			destination = destination.substring(1);
+		}
+		return destination;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the files packed into each uploaded bundle, keyed by the
+	 *    bundle's remote path
+	 * </p>
+	 * 
+	 * @return Map of bundle path to bundled files
+	 */
+	public Map<String, List<UploadMapping>> getBundleContents(){
+		return bundleContents;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the files whose bundle couldn't be uploaded.  Their sources
+	 *    are left in place.
+	 * </p>
+	 * 
+	 * @return Failed upload mappings
+	 */
+	public List<UploadMapping> getFailedMappings(){
+		return failedMappings;
+	}
+	
+	public List<UploadMapping> getUploadMappings(){
+		return uploadMappings;
+	}
+	
+	public void setUploadMappings(List<UploadMapping> uploadMappings){
+		this.uploadMappings = uploadMappings;
+	}
+	
+	public String getRemoteDirectory(){
+		return remoteDirectory;
+	}
+	
+	public void setRemoteDirectory(String remoteDirectory){
+		this.remoteDirectory = remoteDirectory;
+	}
+	
+	public String getBundlePrefix(){
+		return bundlePrefix;
+	}
+	
+	public void setBundlePrefix(String bundlePrefix){
+		this.bundlePrefix = bundlePrefix;
+	}
+	
+	public FTPBundleFormat getBundleFormat(){
+		return bundleFormat;
+	}
+	
+	public void setBundleFormat(FTPBundleFormat bundleFormat){
+		this.bundleFormat = bundleFormat;
+	}
+	
+	public Long getSmallFileBytes(){
+		return smallFileBytes;
+	}
+	
+	public void setSmallFileBytes(Long smallFileBytes){
+		this.smallFileBytes = smallFileBytes;
+	}
+	
+	public Long getTargetBundleBytes(){
+		return targetBundleBytes;
+	}
+	
+	public void setTargetBundleBytes(Long targetBundleBytes){
+		this.targetBundleBytes = targetBundleBytes;
+	}
+}
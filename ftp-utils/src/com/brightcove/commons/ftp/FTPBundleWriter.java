@@ -0,0 +1,217 @@
+package com.brightcove.commons.ftp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * <p>
+ *    Streams files into a TAR (ustar) or ZIP archive written directly to an
+ *    OutputStream (usually an FTP data connection), so no temporary archive
+ *    is ever written to disk.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPBundleWriter {
+	private static final int TAR_BLOCK = 512;
+	
+	private FTPBundleFormat format;
+	private OutputStream    out;
+	private ZipOutputStream zipOut;
+	private byte[]          buffer;
+	private long            bytesWritten;
+	
+	/**
+	 * <p>
+	 *    Constructor.
+	 * </p>
+	 * 
+	 * @param format Archive format
+	 * @param out    Stream to write the archive to (closed by close())
+	 */
+	public FTPBundleWriter(FTPBundleFormat format, OutputStream out){
+		this.format = format;
+		this.out    = out;
+		this.buffer = new byte[64 * 1024];
+		
+		bytesWritten = 0;
+		
+		if(format.equals(FTPBundleFormat.ZIP)){
+			zipOut = new ZipOutputStream(out);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Appends a file to the archive
+	 * </p>
+	 * 
+	 * @param entryName Name of the entry inside the archive
+	 * @param file      File to copy into the archive
+	 * @throws IOException If the file can't be read or the archive written
+	 */
+	public void addFile(String entryName, File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try{
+			if(format.equals(FTPBundleFormat.ZIP)){
+				ZipEntry entry = new ZipEntry(entryName);
+				entry.setTime(file.lastModified());
+				zipOut.putNextEntry(entry);
+				copy(fis, zipOut);
+				zipOut.closeEntry();
+			}
+			else{
+				long size = file.length();
+				writeTarHeader(entryName, size, file.lastModified() / 1000l);
+				long copied = copy(fis, out);
+				if(copied != size){
+					throw new IOException("File \"" + file.getAbsolutePath() + "\" changed size while being bundled.");
+				}
+				writeTarPadding(size);
+			}
+		}
+		finally{
+			fis.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Writes the archive trailer and closes the underlying stream
+	 * </p>
+	 * 
+	 * @throws IOException If the trailer can't be written
+	 */
+	public void close() throws IOException {
+		if(format.equals(FTPBundleFormat.ZIP)){
+			zipOut.close();
+		}
+		else{
+			// Two empty blocks mark the end of a tar archive
+			out.write(new byte[TAR_BLOCK * 2]);
+			out.close();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Closes the underlying stream without finishing the archive, for
+	 *    when a file couldn't be added
+	 * </p>
+	 * 
+	 * @throws IOException If the stream can't be closed
+	 */
+	public void abort() throws IOException {
+		out.close();
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the number of (uncompressed) file bytes added so far
+	 * </p>
+	 * 
+	 * @return Bytes of file content written
+	 */
+	public long getBytesWritten(){
+		return bytesWritten;
+	}
+	
+	private long copy(FileInputStream in, OutputStream to) throws IOException {
+		long copied = 0;
+		int  read;
+		while((read = in.read(buffer)) >= 0){
+			to.write(buffer, 0, read);
+			copied += read;
+		}
+		bytesWritten += copied;
+		return copied;
+	}
+	
+	private void writeTarHeader(String entryName, long size, long mtime) throws IOException {
+		byte[] header = new byte[TAR_BLOCK];
+		
+		byte[] name   = entryName.getBytes("UTF-8");
+		byte[] prefix = null;
+		if(name.length > 100){
+			// Use the ustar prefix field for long paths, splitting on the
+			// first '/' that leaves a name short enough.  Both limits are in
+			// encoded bytes, not characters.
+			int split = entryName.indexOf('/');
+			while(split > 0){
+				byte[] rest = entryName.substring(split + 1).getBytes("UTF-8");
+				if(rest.length <= 100){
+					prefix = entryName.substring(0, split).getBytes("UTF-8");
+					name   = rest;
+					break;
+				}
+				split = entryName.indexOf('/', split + 1);
+			}
+			if((prefix == null) || (prefix.length > 155) || (name.length == 0)){
+				throw new IOException("Entry name \"" + entryName + "\" is too long for a tar archive.");
+			}
+			putBytes(header, 345, prefix, 155);
+		}
+		
+		putBytes(header,   0, name, 100);
+		putOctal(header, 100, 0644,  8);  // mode
+		putOctal(header, 108, 0,     8);  // uid
+		putOctal(header, 116, 0,     8);  // gid
+		putOctal(header, 124, size,  12);
+		putOctal(header, 136, mtime, 12);
+		header[156] = '0';                 // regular file
+		putBytes(header, 257, ascii("ustar"), 6);
+		putBytes(header, 263, ascii("00"),    2);
+		
+		// Checksum is calculated with the checksum field set to spaces
+		for(int i=148; i<156; i++){
+			header[i] = ' ';
+		}
+		long checksum = 0;
+		for(byte b : header){
+			checksum += (b & 0xff);
+		}
+		putOctal(header, 148, checksum, 7);
+		header[155] = ' ';
+		
+		out.write(header);
+	}
+	
+	private void writeTarPadding(long size) throws IOException {
+		int remainder = (int)(size % TAR_BLOCK);
+		if(remainder != 0){
+			out.write(new byte[TAR_BLOCK - remainder]);
+		}
+	}
+	
+	private static void putBytes(byte[] header, int offset, byte[] value, int length) throws IOException {
+		if(value.length > length){
+			throw new IOException("Tar header field of " + value.length + " bytes doesn't fit in " + length + ".");
+		}
+		System.arraycopy(value, 0, header, offset, value.length);
+	}
+	
+	private static void putOctal(byte[] header, int offset, long value, int length){
+		// Zero padded octal, NUL terminated
+		int pos = offset + length - 1;
+		header[pos--] = 0;
+		while(pos >= offset){
+			header[pos--] = (byte)('0' + (value & 7));
+			value >>>= 3;
+		}
+	}
+	
+	private static byte[] ascii(String value){
+		try{
+			return value.getBytes("US-ASCII");
+		}
+		catch(UnsupportedEncodingException uee){
+			throw new IllegalStateException(uee);
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package com.brightcove.commons.ftp;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ *    AIMD (additive increase, multiplicative decrease) controller for the
+ *    number of concurrent FTP transfer sessions.
+ * </p>
+ * 
+ * <p>
+ *    Sessions report what happens to them (bytes transferred, reply codes,
+ *    connect failures).  Once every sampleIntervalMillis the controller looks
+ *    at the last interval:<ul>
+ *        <li>Any congestion signal (421 reply, connect failure, connection
+ *            closed by the server) - the limit is multiplied by
+ *            decreaseFactor</li>
+ *        <li>Otherwise, if every permitted session was busy and throughput
+ *            didn't drop - the limit goes up by one</li>
+ *        <li>Otherwise the limit is left alone</li>
+ *    </ul>
+ *    The limit always stays between minConnections and maxConnections.
+ * </p>
+ * 
+ * <p>
+ *    Callers either wrap each session in acquire()/release(), or read
+ *    getCurrentLimit() when deciding whether to start another session.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPConcurrencyController {
+	/** Reply code servers send when they have too many connections */
+	public static final int REPLY_TOO_MANY_CONNECTIONS = 421;
+	
+	private Logger log;
+	
+	private Integer minConnections;
+	private Integer maxConnections;
+	private Double  decreaseFactor;
+	private Long    sampleIntervalMillis;
+	
+	private int  currentLimit;
+	private int  activeSessions;
+	private int  peakSessions;
+	private long intervalStart;
+	private long intervalBytes;
+	private int  intervalCongestion;
+	private long lastBytesPerSecond;
+	
+	private List<Adjustment> history;
+	
+	/**
+	 * <p>
+	 *    Constructor.  Starts at minConnections and halves on congestion.
+	 * </p>
+	 * 
+	 * @param minConnections       Lower bound on the number of sessions
+	 * @param maxConnections       Upper bound on the number of sessions
+	 * @param sampleIntervalMillis How often (at most) the limit is adjusted
+	 */
+	public FTPConcurrencyController(Integer minConnections, Integer maxConnections, Long sampleIntervalMillis){
+		this(minConnections, maxConnections, minConnections, 0.5d, sampleIntervalMillis);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor specifying everything.
+	 * </p>
+	 * 
+	 * @param minConnections       Lower bound on the number of sessions
+	 * @param maxConnections       Upper bound on the number of sessions
+	 * @param initialConnections   Starting limit
+	 * @param decreaseFactor       Multiplier applied to the limit on congestion (0 - 1)
+	 * @param sampleIntervalMillis How often (at most) the limit is adjusted
+	 */
+	public FTPConcurrencyController(Integer minConnections, Integer maxConnections, Integer initialConnections, Double decreaseFactor, Long sampleIntervalMillis){
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.minConnections       = minConnections;
+		this.maxConnections       = maxConnections;
+		this.decreaseFactor       = decreaseFactor;
+		this.sampleIntervalMillis = sampleIntervalMillis;
+		
+		currentLimit       = Math.max(minConnections, Math.min(maxConnections, initialConnections));
+		activeSessions     = 0;
+		peakSessions       = 0;
+		intervalStart      = now();
+		intervalBytes      = 0;
+		intervalCongestion = 0;
+		lastBytesPerSecond = 0;
+		
+		history = new ArrayList<Adjustment>();
+		history.add(new Adjustment(new Date(intervalStart), 0, currentLimit, 0, "initial"));
+	}
+	
+	/**
+	 * <p>
+	 *    Waits until a session slot is free under the current limit, then
+	 *    takes it.  Every successful acquire() must be matched by release().
+	 * </p>
+	 * 
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while(activeSessions >= currentLimit){
+			wait(sampleIntervalMillis);
+			adjustIfDue();
+		}
+		activeSessions++;
+		peakSessions = Math.max(peakSessions, activeSessions);
+	}
+	
+	/**
+	 * <p>
+	 *    Gives back a slot taken with acquire()
+	 * </p>
+	 */
+	public synchronized void release(){
+		activeSessions--;
+		notifyAll();
+	}
+	
+	/**
+	 * <p>
+	 *    Records payload bytes moved by any session
+	 * </p>
+	 * 
+	 * @param bytes Number of bytes transferred
+	 */
+	public synchronized void recordBytes(long bytes){
+		intervalBytes += bytes;
+		adjustIfDue();
+	}
+	
+	/**
+	 * <p>
+	 *    Records a reply code from the server.  421 counts as congestion.
+	 * </p>
+	 * 
+	 * @param replyCode FTP reply code
+	 */
+	public synchronized void recordReply(int replyCode){
+		if(replyCode == REPLY_TOO_MANY_CONNECTIONS){
+			intervalCongestion++;
+		}
+		adjustIfDue();
+	}
+	
+	/**
+	 * <p>
+	 *    Records a failure to connect or log in, which counts as congestion
+	 * </p>
+	 */
+	public synchronized void recordConnectFailure(){
+		intervalCongestion++;
+		adjustIfDue();
+	}
+	
+	/**
+	 * <p>
+	 *    Records a transfer that failed because the server closed the
+	 *    connection (commons-net reports a 421 sent after login this way),
+	 *    which counts as congestion
+	 * </p>
+	 */
+	public synchronized void recordConnectionClosed(){
+		intervalCongestion++;
+		adjustIfDue();
+	}
+	
+	/**
+	 * <p>
+	 *    Records how many sessions the caller currently has open, for callers
+	 *    that don't use acquire()/release()
+	 * </p>
+	 * 
+	 * @param sessions Number of open sessions
+	 */
+	public synchronized void recordActiveSessions(int sessions){
+		peakSessions = Math.max(peakSessions, sessions);
+	}
+	
+	/**
+	 * <p>
+	 *    Applies an adjustment if a full sample interval has passed since
+	 *    the last one
+	 * </p>
+	 */
+	public synchronized void adjustIfDue(){
+		long now     = now();
+		long elapsed = now - intervalStart;
+		if(elapsed < sampleIntervalMillis){
+			return;
+		}
+		
+		long bytesPerSecond = (intervalBytes * 1000l) / Math.max(1l, elapsed);
+		int  previousLimit  = currentLimit;
+		String reason       = null;
+		
+		if(intervalCongestion > 0){
+			currentLimit = Math.max(minConnections, (int)Math.floor(currentLimit * decreaseFactor));
+			reason       = intervalCongestion + " congestion signal(s)";
+		}
+		else if((peakSessions >= currentLimit) && (bytesPerSecond >= lastBytesPerSecond) && (currentLimit < maxConnections)){
+			currentLimit++;
+			reason = "all sessions busy, throughput " + bytesPerSecond + " B/s";
+		}
+		
+		if(currentLimit != previousLimit){
+			log.info("Concurrency limit " + previousLimit + " -> " + currentLimit + " (" + reason + ").");
+			history.add(new Adjustment(new Date(now), previousLimit, currentLimit, bytesPerSecond, reason));
+			notifyAll();
+		}
+		
+		lastBytesPerSecond = bytesPerSecond;
+		intervalStart      = now;
+		intervalBytes      = 0;
+		intervalCongestion = 0;
+		peakSessions       = activeSessions;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the number of sessions currently allowed
+	 * </p>
+	 * 
+	 * @return Current concurrency limit
+	 */
+	public synchronized Integer getCurrentLimit(){
+		return currentLimit;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the number of slots currently taken through acquire()
+	 * </p>
+	 * 
+	 * @return Number of active sessions
+	 */
+	public synchronized Integer getActiveSessions(){
+		return activeSessions;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns every change made to the limit, oldest first
+	 * </p>
+	 * 
+	 * @return Copy of the adjustment history
+	 */
+	public synchronized List<Adjustment> getHistory(){
+		return new ArrayList<Adjustment>(history);
+	}
+	
+	public Integer getMinConnections(){
+		return minConnections;
+	}
+	
+	public Integer getMaxConnections(){
+		return maxConnections;
+	}
+	
+	public Long getSampleIntervalMillis(){
+		return sampleIntervalMillis;
+	}
+	
+	private long now(){
+		return (new Date()).getTime();
+	}
+	
+	/**
+	 * <p>
+	 *    One change to the concurrency limit
+	 * </p>
+	 */
+	public static class Adjustment {
+		private Date   time;
+		private int    fromLimit;
+		private int    toLimit;
+		private long   bytesPerSecond;
+		private String reason;
+		
+		Adjustment(Date time, int fromLimit, int toLimit, long bytesPerSecond, String reason){
+			this.time           = time;
+			this.fromLimit      = fromLimit;
+			this.toLimit        = toLimit;
+			this.bytesPerSecond = bytesPerSecond;
+			this.reason         = reason;
+		}
+		
+		public Date   getTime()           { return time;           }
+		public int    getFromLimit()      { return fromLimit;      }
+		public int    getToLimit()        { return toLimit;        }
+		public long   getBytesPerSecond() { return bytesPerSecond; }
+		public String getReason()         { return reason;         }
+		
+		public String toString(){
+			return time + ": " + fromLimit + " -> " + toLimit + " (" + reason + ")";
+		}
+	}
+}
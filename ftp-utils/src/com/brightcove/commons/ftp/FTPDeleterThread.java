@@ -0,0 +1,183 @@
+package com.brightcove.commons.ftp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Logger;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+/**
+ * <p>
+ *    Utility class to delete files from an FTP server on its own control
+ *    connection.  Paths are queued with queueDelete() while the thread is
+ *    running and deleted in batches as they arrive, so another thread (e.g.
+ *    FTPDownloaderThread) can carry on transferring in the meantime.
+ * </p>
+ * 
+ * <p>
+ *    Call finish() once everything has been queued, then join() the thread
+ *    and read the per-file results from getDeleteResults().
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPDeleterThread extends FTPThread {
+	private static final String END_OF_QUEUE = new String("END_OF_QUEUE");
+	
+	private BlockingQueue<String> deleteQueue;
+	private Map<String, Boolean>  deleteResults;
+	private Integer               batchSize;
+	
+	public FTPDeleterThread(String serverName, Integer serverPort, String username, String password, Boolean passiveTransfer, Integer batchSize, Boolean debug) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.deleteQueue   = new LinkedBlockingQueue<String>();
+		this.deleteResults = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>());
+		this.batchSize     = batchSize;
+		
+		this.serverName          = serverName;
+		this.serverPort          = serverPort;
+		this.username            = username;
+		this.password            = password;
+		this.skipTransfer        = false;
+		this.removeSource        = true;
+		this.passiveTransfer     = passiveTransfer;
+		this.debug               = debug;
+		
+		exception = null;
+		
+		ftpc = new FTPClient();
+	}
+	
+	public void run() {
+		ftpc = new FTPClient();
+		
+		if(! connect()){
+			// Exception trying to connect - nothing queued will be deleted
+			drainUnprocessed();
+			return;
+		}
+		
+		try{
+			log.info("Deleting from server \"" + serverName + "\".");
+			
+			List<String> batch    = new ArrayList<String>();
+			Boolean      finished = false;
+			while(! finished){
+				batch.clear();
+				batch.add(deleteQueue.take());
+				deleteQueue.drainTo(batch, batchSize - 1);
+				
+				for(String remoteFile : batch){
+					if(remoteFile == END_OF_QUEUE){
+						finished = true;
+						continue;
+					}
+					
+					log.info("\tRemoving source file \"" + remoteFile + "\" per request.");
+					Boolean deleted = false;
+					try{
+						deleted = ftpc.deleteFile(remoteFile);
+						printFTPCommandInfo("delete file (" + remoteFile + ")");
+					}
+					catch(IOException ioe){
+						// Keep going so every queued file gets a result
+						log.info("Exception thrown - '" + ioe + "'.");
+						exception = ioe;
+					}
+					deleteResults.put(remoteFile, deleted);
+				}
+			}
+		}
+		catch(InterruptedException ie){
+			log.info("Exception thrown - '" + ie + "'.");
+			exception = ie;
+		}
+		
+		disconnect();
+	}
+	
+	/**
+	 * <p>
+	 *    Queues a remote file for deletion
+	 * </p>
+	 * 
+	 * @param remoteFile Path on the server to delete
+	 */
+	public void queueDelete(String remoteFile){
+		deleteQueue.add(remoteFile);
+	}
+	
+	/**
+	 * <p>
+	 *    Signals that no more files will be queued.  The thread exits once
+	 *    everything already queued has been processed.
+	 * </p>
+	 */
+	public void finish(){
+		deleteQueue.add(END_OF_QUEUE);
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the outcome of every delete processed so far, in the order
+	 *    they were queued (true if the server confirmed the delete)
+	 * </p>
+	 * 
+	 * @return Map of remote path to delete status
+	 */
+	public Map<String, Boolean> getDeleteResults(){
+		return deleteResults;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the list of remote files that were queued but not deleted
+	 * </p>
+	 * 
+	 * @return Remote paths that could not be deleted
+	 */
+	public List<String> getFailedDeletes(){
+		List<String> failed = new ArrayList<String>();
+		synchronized(deleteResults){
+			for(String remoteFile : deleteResults.keySet()){
+				if(! deleteResults.get(remoteFile)){
+					failed.add(remoteFile);
+				}
+			}
+		}
+		return failed;
+	}
+	
+	public Integer getBatchSize(){
+		return batchSize;
+	}
+	
+	public void setBatchSize(Integer batchSize){
+		this.batchSize = batchSize;
+	}
+	
+	private void drainUnprocessed(){
+		// Record anything left in the queue as failed, waiting for finish()
+		// so the caller's results are complete once join() returns
+		try{
+			while(true){
+				String remoteFile = deleteQueue.take();
+				if(remoteFile == END_OF_QUEUE){
+					return;
+				}
+				deleteResults.put(remoteFile, false);
+			}
+		}
+		catch(InterruptedException ie){
+			// Give up - anything not recorded simply has no result
+		}
+	}
+}
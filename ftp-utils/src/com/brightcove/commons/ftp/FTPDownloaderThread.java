@@ -4,7 +4,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.apache.commons.net.ftp.FTPClient;
@@ -19,12 +21,17 @@ import org.apache.commons.net.ftp.FTPClient;
  *
  */
 public class FTPDownloaderThread extends FTPThread {
-	List<DownloadMapping> downloadMappings;
+	List<DownloadMapping>       downloadMappings;
+	List<StreamDownloadMapping> streamDownloadMappings;
+	
+	Integer              deleteBatchSize;
+	Map<String, Boolean> deleteResults;
 	
 	public FTPDownloaderThread(String serverName, String username, String password, Boolean skipTransfer, Boolean removeSource, Boolean passiveTransfer, List<DownloadMapping> downloadMappings, Boolean debug) {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 		
-		this.downloadMappings = downloadMappings;
+		this.downloadMappings       = downloadMappings;
+		this.streamDownloadMappings = new ArrayList<StreamDownloadMapping>();
 		
 		this.serverName          = serverName;
 		this.serverPort          = 21;
@@ -35,6 +42,9 @@ public class FTPDownloaderThread extends FTPThread {
 		this.passiveTransfer     = passiveTransfer;
 		this.debug               = debug;
 		
+		this.deleteBatchSize     = 50;
+		this.deleteResults       = new LinkedHashMap<String, Boolean>();
+		
 		exception = null;
 		
 		ftpc = new FTPClient();
@@ -43,7 +53,8 @@ public class FTPDownloaderThread extends FTPThread {
 	public FTPDownloaderThread(String serverName, Integer serverPort, String username, String password, Boolean skipTransfer, Boolean removeSource, Boolean passiveTransfer, List<DownloadMapping> downloadMappings, Boolean debug) {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 		
-		this.downloadMappings = downloadMappings;
+		this.downloadMappings       = downloadMappings;
+		this.streamDownloadMappings = new ArrayList<StreamDownloadMapping>();
 		
 		this.serverName          = serverName;
 		this.serverPort          = serverPort;
@@ -54,6 +65,9 @@ public class FTPDownloaderThread extends FTPThread {
 		this.passiveTransfer     = passiveTransfer;
 		this.debug               = debug;
 		
+		this.deleteBatchSize     = 50;
+		this.deleteResults       = new LinkedHashMap<String, Boolean>();
+		
 		exception = null;
 		
 		ftpc = new FTPClient();
@@ -67,6 +81,14 @@ public class FTPDownloaderThread extends FTPThread {
 			return;
 		}
 		
+		// Deletes run on their own control connection so they don't hold up
+		// the next retrieve
+		FTPDeleterThread deleter = null;
+		if(removeSource){
+			deleter = new FTPDeleterThread(serverName, serverPort, username, password, passiveTransfer, deleteBatchSize, debug);
+			deleter.start();
+		}
+		
 		try{
 			log.info("Downloading from server \"" + serverName + "\".");
 			for(DownloadMapping downloadMapping : downloadMappings){
@@ -76,31 +98,82 @@ public class FTPDownloaderThread extends FTPThread {
 				log.info("\tDownloading file \"" + remoteFile + "\" to \"" + localFile.getAbsolutePath() + "\".");
 				
 				FileOutputStream fos = new FileOutputStream(localFile);
-				ftpc.retrieveFile(remoteFile, fos);
-				printFTPCommandInfo("retrieve file (" + remoteFile + ")");
-				fos.flush();
-				fos.close();
+				Boolean retrieved = false;
+				try{
+					retrieved = ftpc.retrieveFile(remoteFile, fos);
+					printFTPCommandInfo("retrieve file (" + remoteFile + ")");
+					fos.flush();
+				}
+				finally{
+					fos.close();
+				}
+				recordReply();
+				if(retrieved){
+					recordBytes(localFile.length());
+				}
 				
-				if(removeSource){
-					log.info("\tRemoving source file \"" + remoteFile + "\" per request.");
-					if(! ftpc.deleteFile(remoteFile)){
-						printFTPCommandInfo("delete file (" + remoteFile + ")");
-						throw new IOException("Couldn't delete file \"" + remoteFile + "\".");
+				if(deleter != null){
+					if(retrieved){
+						log.info("\tQueueing source file \"" + remoteFile + "\" for removal per request.");
+						deleter.queueDelete(remoteFile);
 					}
 					else{
-						printFTPCommandInfo("delete file (" + remoteFile + ")");
+						log.warning("\tRetrieve of \"" + remoteFile + "\" failed - source file will not be removed.");
 					}
 				}
 			}
 			
+			for(StreamDownloadMapping streamDownloadMapping : streamDownloadMappings){
+				String remoteFile = streamDownloadMapping.getSource();
+				
+				log.info("\tDownloading file \"" + remoteFile + "\" to stream.");
+				long bytes = retrieveStream(remoteFile, streamDownloadMapping.getDestination());
+				log.info("\tConsumed " + bytes + " bytes from \"" + remoteFile + "\".");
+				
+				if(deleter != null){
+					log.info("\tQueueing source file \"" + remoteFile + "\" for removal per request.");
+					deleter.queueDelete(remoteFile);
+				}
+			}
+			
 			printFTPCommandInfo("end of file transfers");
 		}
 		catch(Exception e){
 			log.info("Exception thrown - '" + e + "'.");
 			exception = e;
+			recordFailure(e);
 		}
 		
 		disconnect();
+		
+		if(deleter != null){
+			collectDeleteResults(deleter);
+		}
+	}
+	
+	private void collectDeleteResults(FTPDeleterThread deleter) {
+		deleter.finish();
+		
+		try{
+			deleter.join();
+		}
+		catch(InterruptedException ie){
+			log.info("Interrupted waiting for deletes to finish - '" + ie + "'.");
+			if(exception == null){
+				exception = ie;
+			}
+			return;
+		}
+		
+		deleteResults = deleter.getDeleteResults();
+		
+		List<String> failedDeletes = deleter.getFailedDeletes();
+		if((exception == null) && (! failedDeletes.isEmpty())){
+			exception = new IOException("Couldn't delete " + failedDeletes.size() + " file(s), first was \"" + failedDeletes.get(0) + "\".");
+		}
+		if((exception == null) && (deleter.getException() != null)){
+			exception = deleter.getException();
+		}
 	}
 	
 	/**
@@ -157,4 +230,89 @@ public class FTPDownloaderThread extends FTPThread {
 	public void setDownloadMappings(List<DownloadMapping> downloadMappings){
 		this.downloadMappings = downloadMappings;
 	}
+	
+	/**
+	 * <p>
+	 *    Returns the outcome of removing each source file (only populated
+	 *    when removeSource is set).  Files whose retrieve failed are never
+	 *    queued for removal so don't appear here.
+	 * </p>
+	 * 
+	 * @return Map of remote path to delete status, in download order
+	 */
+	public Map<String, Boolean> getDeleteResults(){
+		return deleteResults;
+	}
+	
+	public Integer getDeleteBatchSize(){
+		return deleteBatchSize;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the maximum number of queued deletes issued back to back before
+	 *    checking for newly queued files
+	 * </p>
+	 * 
+	 * @param deleteBatchSize Number of deletes per batch
+	 */
+	public void setDeleteBatchSize(Integer deleteBatchSize){
+		this.deleteBatchSize = deleteBatchSize;
+	}
+	
+	/**
+	 * <p>
+	 *    Clears out the queue of files to download to streams
+	 * </p>
+	 */
+	public void clearStreamDownloadMappings(){
+		streamDownloadMappings = new ArrayList<StreamDownloadMapping>();
+	}
+	
+	/**
+	 * <p>
+	 *    Adds a file to download straight to a consumer.  Streams are
+	 *    downloaded after all of the files.
+	 * </p>
+	 * 
+	 * @param mapping File to download
+	 */
+	public void addStreamDownloadMapping(StreamDownloadMapping mapping){
+		streamDownloadMappings.add(mapping);
+	}
+	
+	/**
+	 * <p>
+	 *    Adds a file to download straight to a consumer
+	 * </p>
+	 * 
+	 * @param source Path to download
+	 * @param destination Consumer to hand the content to
+	 */
+	public void addStreamDownloadMapping(String source, FTPStreamConsumer destination){
+		StreamDownloadMapping mapping = new StreamDownloadMapping(source, destination);
+		addStreamDownloadMapping(mapping);
+	}
+	
+	/**
+	 * <p>
+	 *    Returns a list of all files to be downloaded to streams
+	 * </p>
+	 * 
+	 * @return List of files to download to streams
+	 */
+	public List<StreamDownloadMapping> getStreamDownloadMappings(){
+		return streamDownloadMappings;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the list of all files to be downloaded to streams
+	 * </p>
+	 * 
+	 * @param streamDownloadMappings List of files to download to streams
+	 */
+	public void setStreamDownloadMappings(List<StreamDownloadMapping> streamDownloadMappings){
+		this.streamDownloadMappings = streamDownloadMappings;
+	}
 }
@@ -0,0 +1,302 @@
+package com.brightcove.commons.ftp;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+/**
+ * <p>
+ *    One destination server of an FTPFanOutUploaderThread.  The fan-out
+ *    thread reads each local file once and hands the same chunks to every
+ *    destination; this thread writes them to its own data connection.
+ * </p>
+ * 
+ * <p>
+ *    Each destination has a bounded chunk queue, so a slow server only
+ *    holds up the reader once its queue is full.  A destination that fails
+ *    part way through a file discards the rest of that file's chunks and
+ *    records the mapping as failed.  Failed mappings are retried from disk
+ *    (maxRetries times) once the fan-out pass is over, independently of the
+ *    other destinations.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPFanOutDestinationThread extends FTPThread {
+	private BlockingQueue<Chunk>        chunkQueue;
+	private Integer                     maxRetries;
+	private Map<UploadMapping, Boolean> uploadResults;
+	
+	private Boolean      connected;
+	private OutputStream currentStream;
+	private Boolean      currentFailed;
+	
+	public FTPFanOutDestinationThread(String serverName, Integer serverPort, String username, String password, Boolean passiveTransfer, Integer queueChunks, Integer maxRetries, Boolean debug) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.chunkQueue    = new ArrayBlockingQueue<Chunk>(queueChunks);
+		this.maxRetries    = maxRetries;
+		this.uploadResults = Collections.synchronizedMap(new LinkedHashMap<UploadMapping, Boolean>());
+		
+		this.serverName          = serverName;
+		this.serverPort          = serverPort;
+		this.username            = username;
+		this.password            = password;
+		this.skipTransfer        = false;
+		this.removeSource        = false;
+		this.passiveTransfer     = passiveTransfer;
+		this.debug               = debug;
+		
+		exception = null;
+		
+		ftpc = new FTPClient();
+	}
+	
+	public void run() {
+		connected = connect();
+		if(! connected){
+			log.warning("Couldn't connect to \"" + serverName + "\" - all files for this destination will be retried.");
+		}
+		
+		try{
+			Boolean finished = false;
+			while(! finished){
+				Chunk chunk = chunkQueue.take();
+				switch(chunk.type){
+					case START:
+						startFile(chunk.mapping);
+						break;
+					case DATA:
+						writeData(chunk);
+						break;
+					case END:
+						endFile(chunk.mapping);
+						break;
+					case ABORT:
+						abortFile(chunk.mapping);
+						break;
+					default:
+						finished = true;
+						break;
+				}
+			}
+			
+			retryFailedUploads();
+		}
+		catch(InterruptedException ie){
+			log.info("Exception thrown - '" + ie + "'.");
+			exception = ie;
+		}
+		
+		if(connected){
+			disconnect();
+		}
+	}
+	
+	private void startFile(UploadMapping mapping){
+		currentStream = null;
+		currentFailed = ! connected;
+		if(currentFailed){
+			return;
+		}
+		
+		try{
+			log.info("\tUploading file \"" + mapping.getSource().getAbsolutePath() + "\" to \"" + serverName + "\".");
+			currentStream = ftpc.storeFileStream(mapping.getDestination());
+			printFTPCommandInfo("store file stream (" + mapping.getDestination() + ")");
+			if(currentStream == null){
+				currentFailed = true;
+			}
+		}
+		catch(IOException ioe){
+			fail(ioe);
+		}
+	}
+	
+	private void writeData(Chunk chunk){
+		if(currentFailed){
+			return;
+		}
+		
+		try{
+			currentStream.write(chunk.data, 0, chunk.length);
+		}
+		catch(IOException ioe){
+			fail(ioe);
+		}
+	}
+	
+	private void endFile(UploadMapping mapping){
+		Boolean success = false;
+		if(! currentFailed){
+			try{
+				currentStream.close();
+				success = ftpc.completePendingCommand();
+				printFTPCommandInfo("complete store (" + mapping.getDestination() + ")");
+			}
+			catch(IOException ioe){
+				fail(ioe);
+			}
+		}
+		else{
+			abandon(mapping);
+		}
+		
+		uploadResults.put(mapping, success);
+		currentStream = null;
+	}
+	
+	/**
+	 * <p>
+	 *    The reader couldn't read the whole file, so whatever was sent is
+	 *    discarded and the file is recorded as failed
+	 * </p>
+	 */
+	private void abortFile(UploadMapping mapping){
+		abandon(mapping);
+		uploadResults.put(mapping, false);
+		currentStream = null;
+	}
+	
+	/**
+	 * <p>
+	 *    Closes a partial transfer, if one is open, and removes the
+	 *    truncated file it left on the server
+	 * </p>
+	 */
+	private void abandon(UploadMapping mapping){
+		if(currentStream == null){
+			return;
+		}
+		try{
+			currentStream.close();
+			ftpc.completePendingCommand();
+			ftpc.deleteFile(mapping.getDestination());
+			printFTPCommandInfo("delete partial file (" + mapping.getDestination() + ")");
+		}
+		catch(IOException ioe){
+			log.info("Exception thrown closing failed transfer - '" + ioe + "'.");
+		}
+	}
+	
+	private void fail(IOException ioe){
+		log.info("Exception thrown - '" + ioe + "'.");
+		exception     = ioe;
+		currentFailed = true;
+	}
+	
+	private void retryFailedUploads(){
+		for(int attempt=0; attempt<maxRetries; attempt++){
+			List<UploadMapping> failed = getFailedMappings();
+			if(failed.isEmpty()){
+				return;
+			}
+			
+			log.info("Retrying " + failed.size() + " file(s) to \"" + serverName + "\" (attempt " + (attempt + 1) + " of " + maxRetries + ").");
+			
+			if(connected){
+				disconnect();
+			}
+			connected = connect();
+			if(! connected){
+				continue;
+			}
+			
+			for(UploadMapping mapping : failed){
+				try{
+					FileInputStream fis = new FileInputStream(mapping.getSource());
+					try{
+						Boolean stored = ftpc.storeFile(mapping.getDestination(), fis);
+						printFTPCommandInfo("store file (" + mapping.getDestination() + ")");
+						uploadResults.put(mapping, stored);
+					}
+					finally{
+						fis.close();
+					}
+				}
+				catch(IOException ioe){
+					log.info("Exception thrown - '" + ioe + "'.");
+					exception = ioe;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the mappings that have not (yet) been uploaded successfully
+	 *    to this destination
+	 * </p>
+	 * 
+	 * @return Failed upload mappings
+	 */
+	public List<UploadMapping> getFailedMappings(){
+		List<UploadMapping> failed = new ArrayList<UploadMapping>();
+		synchronized(uploadResults){
+			for(UploadMapping mapping : uploadResults.keySet()){
+				if(! uploadResults.get(mapping)){
+					failed.add(mapping);
+				}
+			}
+		}
+		return failed;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns the upload status of every file handed to this destination
+	 * </p>
+	 * 
+	 * @return Map of upload mapping to success
+	 */
+	public Map<UploadMapping, Boolean> getUploadResults(){
+		return uploadResults;
+	}
+	
+	public Integer getMaxRetries(){
+		return maxRetries;
+	}
+	
+	public void setMaxRetries(Integer maxRetries){
+		this.maxRetries = maxRetries;
+	}
+	
+	void put(Chunk chunk) throws InterruptedException {
+		chunkQueue.put(chunk);
+	}
+	
+	enum ChunkType {
+		START, DATA, END, ABORT, STOP
+	}
+	
+	/**
+	 * <p>
+	 *    Unit of work passed from the fan-out reader.  DATA chunks are shared
+	 *    (read only) between all destinations.
+	 * </p>
+	 */
+	static class Chunk {
+		ChunkType     type;
+		UploadMapping mapping;
+		byte[]        data;
+		int           length;
+		
+		Chunk(ChunkType type, UploadMapping mapping, byte[] data, int length){
+			this.type    = type;
+			this.mapping = mapping;
+			this.data    = data;
+			this.length  = length;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.brightcove.commons.ftp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+import com.brightcove.commons.ftp.FTPFanOutDestinationThread.Chunk;
+import com.brightcove.commons.ftp.FTPFanOutDestinationThread.ChunkType;
+
+/**
+ * <p>
+ *    Uploads the same set of files to several FTP servers at once (e.g. a
+ *    primary and a DR ingest endpoint), reading each local file only once.
+ *    Each chunk read from disk is handed to every FTPFanOutDestinationThread,
+ *    which streams it to its own server.
+ * </p>
+ * 
+ * <p>
+ *    Failures are tracked and retried per destination.  If removeSource is
+ *    set a local file is only deleted once every destination has it, and
+ *    never if it couldn't be read; a file that can't be read is aborted on
+ *    every destination and the remaining files are still uploaded.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPFanOutUploaderThread extends FTPThread {
+	private List<UploadMapping>              uploadMappings;
+	private List<FTPFanOutDestinationThread> destinations;
+	private Integer                          chunkSize;
+	private List<UploadMapping>              unreadMappings;
+	
+	public FTPFanOutUploaderThread(List<FTPFanOutDestinationThread> destinations, Boolean removeSource, List<UploadMapping> uploadMappings, Integer chunkSize, Boolean debug) {
+		log = Logger.getLogger(this.getClass().getCanonicalName());
+		
+		this.destinations   = destinations;
+		this.uploadMappings = uploadMappings;
+		this.chunkSize      = chunkSize;
+		this.unreadMappings = new ArrayList<UploadMapping>();
+		
+		this.serverName          = null;
+		this.serverPort          = null;
+		this.username            = null;
+		this.password            = null;
+		this.skipTransfer        = false;
+		this.removeSource        = removeSource;
+		this.passiveTransfer     = null;
+		this.debug               = debug;
+		
+		exception = null;
+		
+		ftpc = new FTPClient();
+	}
+	
+	public void run() {
+		for(FTPFanOutDestinationThread destination : destinations){
+			destination.start();
+		}
+		
+		try{
+			for(UploadMapping uploadMapping : uploadMappings){
+				try{
+					fanOut(uploadMapping);
+				}
+				catch(IOException ioe){
+					log.warning("\tCouldn't read file \"" + uploadMapping.getSource().getAbsolutePath() + "\" - '" + ioe + "'.");
+					unreadMappings.add(uploadMapping);
+					if(exception == null){
+						exception = ioe;
+					}
+				}
+			}
+		}
+		catch(InterruptedException ie){
+			log.info("Exception thrown - '" + ie + "'.");
+			exception = ie;
+		}
+		
+		try{
+			broadcast(new Chunk(ChunkType.STOP, null, null, 0));
+			for(FTPFanOutDestinationThread destination : destinations){
+				destination.join();
+			}
+		}
+		catch(InterruptedException ie){
+			exception = ie;
+			return;
+		}
+		
+		if(removeSource && ! (exception instanceof InterruptedException)){
+			removeUploadedSources();
+		}
+		
+		if(exception == null){
+			for(FTPFanOutDestinationThread destination : destinations){
+				List<UploadMapping> failed = destination.getFailedMappings();
+				if(! failed.isEmpty()){
+					exception = new IOException("Couldn't upload " + failed.size() + " file(s) to \"" + destination.getServerName() + "\", first was \"" + failed.get(0).getSource().getAbsolutePath() + "\".");
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Reads one local file and hands its chunks to every destination.  If
+	 *    the file can't be opened or read, the destinations are told to abort
+	 *    it, so none of them records a partial transfer as a success.
+	 * </p>
+	 */
+	private void fanOut(UploadMapping uploadMapping) throws IOException, InterruptedException {
+		File localFile = uploadMapping.getSource();
+		log.info("\tReading file \"" + localFile.getAbsolutePath() + "\" for " + destinations.size() + " destination(s).");
+		
+		FileInputStream fis;
+		try{
+			fis = new FileInputStream(localFile);
+		}
+		catch(IOException ioe){
+			broadcast(new Chunk(ChunkType.ABORT, uploadMapping, null, 0));
+			throw ioe;
+		}
+		
+		broadcast(new Chunk(ChunkType.START, uploadMapping, null, 0));
+		Boolean complete = false;
+		try{
+			while(true){
+				// Fresh buffer per chunk - destinations may still be
+				// writing the previous one
+				byte[] buffer = new byte[chunkSize];
+				int    read   = fis.read(buffer);
+				if(read < 0){
+					break;
+				}
+				if(read > 0){
+					broadcast(new Chunk(ChunkType.DATA, uploadMapping, buffer, read));
+				}
+			}
+			complete = true;
+		}
+		finally{
+			try{
+				fis.close();
+			}
+			catch(IOException ioe){
+				log.info("Exception thrown closing \"" + localFile.getAbsolutePath() + "\" - '" + ioe + "'.");
+			}
+			broadcast(new Chunk(complete ? ChunkType.END : ChunkType.ABORT, uploadMapping, null, 0));
+		}
+	}
+	
+	private void broadcast(Chunk chunk) throws InterruptedException {
+		for(FTPFanOutDestinationThread destination : destinations){
+			destination.put(chunk);
+		}
+	}
+	
+	private void removeUploadedSources(){
+		for(UploadMapping uploadMapping : uploadMappings){
+			File localFile = uploadMapping.getSource();
+			if(unreadMappings.contains(uploadMapping)){
+				log.warning("\tNot removing source file \"" + localFile.getAbsolutePath() + "\" - it couldn't be read.");
+				continue;
+			}
+			
+			Boolean everywhere = true;
+			for(FTPFanOutDestinationThread destination : destinations){
+				Boolean uploaded = destination.getUploadResults().get(uploadMapping);
+				if((uploaded == null) || (! uploaded)){
+					everywhere = false;
+					break;
+				}
+			}
+			
+			if(everywhere){
+				log.info("\tRemoving source file \"" + localFile.getAbsolutePath() + "\" per request.");
+				if((! localFile.delete()) && (exception == null)){
+					exception = new IOException("Couldn't delete file \"" + localFile.getAbsolutePath() + "\".");
+				}
+			}
+			else{
+				log.warning("\tNot removing source file \"" + localFile.getAbsolutePath() + "\" - not uploaded to every destination.");
+			}
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Returns, for each destination, the files that could not be uploaded
+	 *    even after retrying
+	 * </p>
+	 * 
+	 * @return Failed upload mappings, in the same order as getDestinations()
+	 */
+	public List<List<UploadMapping>> getFailedMappings(){
+		List<List<UploadMapping>> failed = new ArrayList<List<UploadMapping>>();
+		for(FTPFanOutDestinationThread destination : destinations){
+			failed.add(destination.getFailedMappings());
+		}
+		return failed;
+	}
+	
+	public List<FTPFanOutDestinationThread> getDestinations(){
+		return destinations;
+	}
+	
+	public void setDestinations(List<FTPFanOutDestinationThread> destinations){
+		this.destinations = destinations;
+	}
+	
+	public List<UploadMapping> getUploadMappings(){
+		return uploadMappings;
+	}
+	
+	public void setUploadMappings(List<UploadMapping> uploadMappings){
+		this.uploadMappings = uploadMappings;
+	}
+	
+	public Integer getChunkSize(){
+		return chunkSize;
+	}
+	
+	public void setChunkSize(Integer chunkSize){
+		this.chunkSize = chunkSize;
+	}
+}
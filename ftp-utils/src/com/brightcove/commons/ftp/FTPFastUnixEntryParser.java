@@ -0,0 +1,237 @@
+package com.brightcove.commons.ftp;
+
+import java.util.Calendar;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParserImpl;
+
+/**
+ * <p>
+ *    Parser for UNIX style ("ls -l") LIST output.  Unlike the regular
+ *    expression based parser shipped with commons-net, this walks each line
+ *    once by index and only allocates the FTPFile, its name and its
+ *    timestamp.  Owner, group and permission details are not kept.
+ * </p>
+ * 
+ * <p>
+ *    Handles listings with or without the group column, e.g.:<ul>
+ *        <li>drwxr-xr-x   2 owner group  4096 Jan 12 14:05 directory</li>
+ *        <li>-rw-r--r--   1 owner group 12345 Jan 12  2011 file name.flv</li>
+ *        <li>lrwxrwxrwx   1 owner         11 Jan 12 14:05 link -&gt; target</li>
+ *    </ul>
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPFastUnixEntryParser extends FTPFileEntryParserImpl {
+	private int currentYear;
+	private int currentMonth;
+	
+	public FTPFastUnixEntryParser(){
+		Calendar now = Calendar.getInstance();
+		currentYear  = now.get(Calendar.YEAR);
+		currentMonth = now.get(Calendar.MONTH);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.apache.commons.net.ftp.FTPFileEntryParser#parseFTPEntry(java.lang.String)
+	 */
+	public FTPFile parseFTPEntry(String entry) {
+		int length = entry.length();
+		if(length < 11){
+			return null;
+		}
+		
+		int type;
+		switch(entry.charAt(0)){
+			case 'd':
+				type = FTPFile.DIRECTORY_TYPE;
+				break;
+			case 'l':
+			case 'e':
+				type = FTPFile.SYMBOLIC_LINK_TYPE;
+				break;
+			case '-':
+			case 'f':
+			case 'b':
+			case 'c':
+				type = FTPFile.FILE_TYPE;
+				break;
+			case 'p':
+			case 's':
+				type = FTPFile.UNKNOWN_TYPE;
+				break;
+			default:
+				// "total 1234" and anything else we don't understand
+				return null;
+		}
+		
+		// Walk the whitespace separated columns until we hit the month name.
+		// The column right before the month is the size.  A 3 letter owner
+		// or group such as "mar" or "dec" also parses as a month, so it only
+		// counts when it follows a numeric size and precedes a 1-2 digit day.
+		int  pos      = skipToken(entry, 0, length);
+		long size     = -1;
+		int  month    = -1;
+		int  day      = -1;
+		int  columns  = 0;
+		while(pos < length){
+			pos = skipSpaces(entry, pos, length);
+			int end = skipToken(entry, pos, length);
+			if((end - pos == 3) && (columns >= 2) && (size >= 0)){
+				int candidate = parseMonth(entry, pos);
+				if(candidate >= 0){
+					int dayStart = skipSpaces(entry, end, length);
+					int dayEnd   = skipToken(entry, dayStart, length);
+					if((dayEnd - dayStart >= 1) && (dayEnd - dayStart <= 2)){
+						day = (int)parseLong(entry, dayStart, dayEnd);
+						if(day >= 1){
+							month = candidate;
+							pos   = dayEnd;
+							break;
+						}
+					}
+				}
+			}
+			size = parseLong(entry, pos, end);
+			columns++;
+			pos = end;
+		}
+		if((month < 0) || (pos >= length)){
+			return null;
+		}
+		
+		// Either "HH:MM" (within the last six months) or "YYYY"
+		pos = skipSpaces(entry, pos, length);
+		int end = skipToken(entry, pos, length);
+		int year   = currentYear;
+		int hour   = 0;
+		int minute = 0;
+		int colon  = entry.indexOf(':', pos);
+		if((colon > pos) && (colon < end)){
+			hour   = (int)parseLong(entry, pos, colon);
+			minute = (int)parseLong(entry, colon + 1, end);
+			if(month > currentMonth){
+				year--;
+			}
+		}
+		else{
+			year = (int)parseLong(entry, pos, end);
+		}
+		if((year < 0) || (hour < 0) || (minute < 0)){
+			return null;
+		}
+		
+		// The remainder of the line is the name (which may contain spaces)
+		pos = skipSpaces(entry, end, length);
+		if(pos >= length){
+			return null;
+		}
+		String name = entry.substring(pos);
+		
+		FTPFile file = new FTPFile();
+		file.setRawListing(entry);
+		file.setType(type);
+		file.setSize(size);
+		
+		if(type == FTPFile.SYMBOLIC_LINK_TYPE){
+			int arrow = name.indexOf(" -> ");
+			if(arrow >= 0){
+				file.setLink(name.substring(arrow + 4));
+				name = name.substring(0, arrow);
+			}
+		}
+		file.setName(name);
+		
+		Calendar timestamp = Calendar.getInstance();
+		timestamp.clear();
+		timestamp.set(year, month, day, hour, minute);
+		file.setTimestamp(timestamp);
+		
+		return file;
+	}
+	
+	static int skipSpaces(String entry, int pos, int length){
+		while((pos < length) && (entry.charAt(pos) == ' ')){
+			pos++;
+		}
+		return pos;
+	}
+	
+	static int skipToken(String entry, int pos, int length){
+		while((pos < length) && (entry.charAt(pos) != ' ')){
+			pos++;
+		}
+		return pos;
+	}
+	
+	/**
+	 * <p>
+	 *    Parses an unsigned decimal number between the two indexes
+	 * </p>
+	 * 
+	 * @return Parsed number, or -1 if the range is empty or not all digits
+	 */
+	static long parseLong(String entry, int start, int end){
+		if(start >= end){
+			return -1;
+		}
+		
+		long value = 0;
+		for(int i=start; i<end; i++){
+			char c = entry.charAt(i);
+			if((c < '0') || (c > '9')){
+				return -1;
+			}
+			value = (value * 10) + (c - '0');
+		}
+		return value;
+	}
+	
+	/**
+	 * <p>
+	 *    Parses a three letter English month abbreviation (any case)
+	 * </p>
+	 * 
+	 * @return Calendar month (0-11), or -1 if not a month
+	 */
+	static int parseMonth(String entry, int pos){
+		char a = Character.toLowerCase(entry.charAt(pos));
+		char b = Character.toLowerCase(entry.charAt(pos + 1));
+		char c = Character.toLowerCase(entry.charAt(pos + 2));
+		
+		switch(a){
+			case 'j':
+				if((b == 'a') && (c == 'n')){ return Calendar.JANUARY; }
+				if((b == 'u') && (c == 'n')){ return Calendar.JUNE;    }
+				if((b == 'u') && (c == 'l')){ return Calendar.JULY;    }
+				break;
+			case 'f':
+				if((b == 'e') && (c == 'b')){ return Calendar.FEBRUARY; }
+				break;
+			case 'm':
+				if((b == 'a') && (c == 'r')){ return Calendar.MARCH; }
+				if((b == 'a') && (c == 'y')){ return Calendar.MAY;   }
+				break;
+			case 'a':
+				if((b == 'p') && (c == 'r')){ return Calendar.APRIL;  }
+				if((b == 'u') && (c == 'g')){ return Calendar.AUGUST; }
+				break;
+			case 's':
+				if((b == 'e') && (c == 'p')){ return Calendar.SEPTEMBER; }
+				break;
+			case 'o':
+				if((b == 'c') && (c == 't')){ return Calendar.OCTOBER; }
+				break;
+			case 'n':
+				if((b == 'o') && (c == 'v')){ return Calendar.NOVEMBER; }
+				break;
+			case 'd':
+				if((b == 'e') && (c == 'c')){ return Calendar.DECEMBER; }
+				break;
+		}
+		
+		return -1;
+	}
+}
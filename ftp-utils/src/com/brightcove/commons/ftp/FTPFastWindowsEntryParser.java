@@ -0,0 +1,119 @@
+package com.brightcove.commons.ftp;
+
+import java.util.Calendar;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParserImpl;
+
+/**
+ * <p>
+ *    Parser for Windows/IIS style (MS-DOS) LIST output.  Like
+ *    FTPFastUnixEntryParser, this scans each line by index rather than with
+ *    a regular expression.  Lines that don't start with a date are handed
+ *    to FTPFastUnixEntryParser.
+ * </p>
+ * 
+ * <p>
+ *    Example lines:<ul>
+ *        <li>01-12-11  02:05PM       &lt;DIR&gt;          directory</li>
+ *        <li>01-12-2011  14:05            12345 file name.flv</li>
+ *    </ul>
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPFastWindowsEntryParser extends FTPFileEntryParserImpl {
+	private FTPFastUnixEntryParser unixParser;
+	
+	public FTPFastWindowsEntryParser(){
+		// IIS can be switched to UNIX style listings
+		unixParser = new FTPFastUnixEntryParser();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.apache.commons.net.ftp.FTPFileEntryParser#parseFTPEntry(java.lang.String)
+	 */
+	public FTPFile parseFTPEntry(String entry) {
+		int length = entry.length();
+		if((length > 0) && (! Character.isDigit(entry.charAt(0)))){
+			return unixParser.parseFTPEntry(entry);
+		}
+		
+		// Date - MM-DD-YY or MM-DD-YYYY
+		int pos = FTPFastUnixEntryParser.skipSpaces(entry, 0, length);
+		int end = FTPFastUnixEntryParser.skipToken(entry, pos, length);
+		if((end - pos < 8) || (entry.charAt(pos + 2) != '-') || (entry.charAt(pos + 5) != '-')){
+			return null;
+		}
+		int month = (int)FTPFastUnixEntryParser.parseLong(entry, pos,     pos + 2);
+		int day   = (int)FTPFastUnixEntryParser.parseLong(entry, pos + 3, pos + 5);
+		int year  = (int)FTPFastUnixEntryParser.parseLong(entry, pos + 6, end);
+		if((month < 1) || (day < 1) || (year < 0)){
+			return null;
+		}
+		if(year < 100){
+			year += (year < 70) ? 2000 : 1900;
+		}
+		
+		// Time - HH:MM with optional AM/PM suffix
+		pos = FTPFastUnixEntryParser.skipSpaces(entry, end, length);
+		end = FTPFastUnixEntryParser.skipToken(entry, pos, length);
+		int colon = entry.indexOf(':', pos);
+		if((colon < 0) || (colon >= end)){
+			return null;
+		}
+		int timeEnd = end;
+		if((end - colon > 3) && ((entry.charAt(end - 1) == 'M') || (entry.charAt(end - 1) == 'm'))){
+			timeEnd = end - 2;
+		}
+		int hour   = (int)FTPFastUnixEntryParser.parseLong(entry, pos,       colon);
+		int minute = (int)FTPFastUnixEntryParser.parseLong(entry, colon + 1, timeEnd);
+		if((hour < 0) || (minute < 0)){
+			return null;
+		}
+		if(timeEnd != end){
+			char meridian = Character.toUpperCase(entry.charAt(timeEnd));
+			if(hour == 12){
+				hour = 0;
+			}
+			if(meridian == 'P'){
+				hour += 12;
+			}
+		}
+		
+		// "<DIR>" or the size
+		pos = FTPFastUnixEntryParser.skipSpaces(entry, end, length);
+		end = FTPFastUnixEntryParser.skipToken(entry, pos, length);
+		int  type = FTPFile.FILE_TYPE;
+		long size = 0;
+		if(entry.startsWith("<DIR>", pos)){
+			type = FTPFile.DIRECTORY_TYPE;
+		}
+		else{
+			size = FTPFastUnixEntryParser.parseLong(entry, pos, end);
+			if(size < 0){
+				return null;
+			}
+		}
+		
+		// Remainder is the name
+		pos = FTPFastUnixEntryParser.skipSpaces(entry, end, length);
+		if(pos >= length){
+			return null;
+		}
+		
+		FTPFile file = new FTPFile();
+		file.setRawListing(entry);
+		file.setType(type);
+		file.setSize(size);
+		file.setName(entry.substring(pos));
+		
+		Calendar timestamp = Calendar.getInstance();
+		timestamp.clear();
+		timestamp.set(year, month - 1, day, hour, minute);
+		file.setTimestamp(timestamp);
+		
+		return file;
+	}
+}
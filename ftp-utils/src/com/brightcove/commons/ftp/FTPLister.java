@@ -0,0 +1,223 @@
+package com.brightcove.commons.ftp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPFile;
+
+/**
+ * <p>
+ *    Lists directories on an FTP server using one of the strategies in
+ *    FTPListingMode.  The server system type and MLSD support are looked up
+ *    once per server (host:port) and cached for the life of the JVM, so
+ *    reconnects don't repeat SYST/FEAT.
+ * </p>
+ * 
+ * <p>
+ *    Entries returned for NLST listings only have a name and a type.  The
+ *    type is FILE if the name matches the configured file name pattern,
+ *    UNKNOWN otherwise (callers can resolve it by trying to change into the
+ *    entry).
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPLister {
+	/** Default pattern for NLST type inference - anything with an extension is a file */
+	public static final String DEFAULT_NLST_FILE_REGEX = "\\.[A-Za-z0-9]{1,5}$";
+	
+	private static Map<String, String>  systemTypes   = new ConcurrentHashMap<String, String>();
+	private static Map<String, Boolean> mlsdSupported = new ConcurrentHashMap<String, Boolean>();
+	
+	private FTPClient      ftpc;
+	private String         serverKey;
+	private FTPListingMode listingMode;
+	private Pattern        nlstFilePattern;
+	private Boolean        configured;
+	
+	/**
+	 * <p>
+	 *    Constructor.
+	 * </p>
+	 * 
+	 * @param ftpc            Connected and logged in client to list with
+	 * @param serverName      Server host name or ip address (used as the cache key)
+	 * @param serverPort      Server port (used as the cache key)
+	 * @param listingMode     Listing strategy (null for DEFAULT)
+	 * @param nlstFileRegex   Regex identifying file names in NLST mode (null for DEFAULT_NLST_FILE_REGEX)
+	 */
+	public FTPLister(FTPClient ftpc, String serverName, Integer serverPort, FTPListingMode listingMode, String nlstFileRegex){
+		this.ftpc      = ftpc;
+		this.serverKey = serverName + ":" + serverPort;
+		
+		if(listingMode == null){
+			listingMode = FTPListingMode.DEFAULT;
+		}
+		this.listingMode = listingMode;
+		
+		if(nlstFileRegex == null){
+			nlstFileRegex = DEFAULT_NLST_FILE_REGEX;
+		}
+		this.nlstFilePattern = Pattern.compile(nlstFileRegex);
+		
+		configured = false;
+	}
+	
+	/**
+	 * <p>
+	 *    Lists the current working directory.  The "." and ".." entries are
+	 *    never returned.
+	 * </p>
+	 * 
+	 * @return Entries in the current working directory
+	 * @throws IOException If the listing fails
+	 */
+	public FTPFile[] list() throws IOException {
+		FTPListingMode mode = resolveMode();
+		
+		FTPFile[] files;
+		switch(mode){
+			case MLSD:
+				files = ftpc.mlistDir();
+				break;
+			case NLST:
+				files = listNames();
+				break;
+			case FAST_LIST:
+				configureFastParser();
+				files = ftpc.listFiles();
+				break;
+			default:
+				files = ftpc.listFiles();
+				break;
+		}
+		
+		return removeDotEntries(files);
+	}
+	
+	/**
+	 * <p>
+	 *    Works out the effective mode (resolving AUTO against the server's
+	 *    advertised features).
+	 * </p>
+	 * 
+	 * @return Listing mode that will actually be used
+	 * @throws IOException If the FEAT command fails
+	 */
+	public FTPListingMode resolveMode() throws IOException {
+		if(! listingMode.equals(FTPListingMode.AUTO)){
+			return listingMode;
+		}
+		
+		Boolean mlsd = mlsdSupported.get(serverKey);
+		if(mlsd == null){
+			mlsd = ftpc.hasFeature("MLST");
+			mlsdSupported.put(serverKey, mlsd);
+		}
+		
+		if(mlsd){
+			return FTPListingMode.MLSD;
+		}
+		return FTPListingMode.FAST_LIST;
+	}
+	
+	private void configureFastParser() throws IOException {
+		if(configured){
+			return;
+		}
+		
+		String systemType = systemTypes.get(serverKey);
+		if(systemType == null){
+			systemType = ftpc.getSystemType();
+			systemTypes.put(serverKey, systemType);
+		}
+		
+		ftpc.setParserFactory(new FTPListingParserFactory());
+		ftpc.configure(new FTPClientConfig(systemType));
+		
+		configured = true;
+	}
+	
+	private FTPFile[] listNames() throws IOException {
+		String[] names = ftpc.listNames();
+		if(names == null){
+			return new FTPFile[0];
+		}
+		
+		FTPFile[] files = new FTPFile[names.length];
+		for(int i=0; i<names.length; i++){
+			String name = names[i];
+			
+			// Some servers return the path they were asked about as a prefix
+			int slash = name.lastIndexOf('/');
+			if(slash >= 0){
+				name = name.substring(slash + 1);
+			}
+			
+			FTPFile file = new FTPFile();
+			file.setName(name);
+			if(nlstFilePattern.matcher(name).find()){
+				file.setType(FTPFile.FILE_TYPE);
+			}
+			else{
+				file.setType(FTPFile.UNKNOWN_TYPE);
+			}
+			files[i] = file;
+		}
+		
+		return files;
+	}
+	
+	private FTPFile[] removeDotEntries(FTPFile[] files){
+		if(files == null){
+			return new FTPFile[0];
+		}
+		
+		List<FTPFile> kept = null;
+		for(int i=0; i<files.length; i++){
+			FTPFile file    = files[i];
+			boolean dotFile = (file == null) || ".".equals(file.getName()) || "..".equals(file.getName());
+			
+			if(dotFile && (kept == null)){
+				kept = new ArrayList<FTPFile>(files.length);
+				for(int j=0; j<i; j++){
+					kept.add(files[j]);
+				}
+			}
+			else if((! dotFile) && (kept != null)){
+				kept.add(file);
+			}
+		}
+		
+		if(kept == null){
+			return files;
+		}
+		return kept.toArray(new FTPFile[kept.size()]);
+	}
+	
+	/**
+	 * <p>
+	 *    Forgets any cached system types / feature support, e.g. after a
+	 *    server has been upgraded.
+	 * </p>
+	 */
+	public static void clearServerCache(){
+		systemTypes.clear();
+		mlsdSupported.clear();
+	}
+	
+	public FTPListingMode getListingMode(){
+		return listingMode;
+	}
+	
+	public Pattern getNlstFilePattern(){
+		return nlstFilePattern;
+	}
+}
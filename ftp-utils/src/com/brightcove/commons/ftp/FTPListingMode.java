@@ -0,0 +1,22 @@
+package com.brightcove.commons.ftp;
+
+/**
+ * <p>
+ *    Strategies available to FTPLister for listing the contents of a
+ *    directory on an FTP server.
+ * </p>
+ * 
+ * <ul>
+ *    <li>DEFAULT:   LIST, parsed by the stock commons-net parser (auto-detected from SYST)</li>
+ *    <li>FAST_LIST: LIST, parsed by a pre-selected UNIX/Windows parser cached per server</li>
+ *    <li>MLSD:      Machine readable listing (RFC 3659) - server must support MLST</li>
+ *    <li>NLST:      Names only - entry types are inferred from the file name</li>
+ *    <li>AUTO:      MLSD if the server supports it, FAST_LIST otherwise</li>
+ * </ul>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public enum FTPListingMode {
+	DEFAULT, FAST_LIST, MLSD, NLST, AUTO
+}
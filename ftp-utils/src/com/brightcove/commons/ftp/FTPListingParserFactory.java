@@ -0,0 +1,50 @@
+package com.brightcove.commons.ftp;
+
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.FTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.ParserInitializationException;
+
+/**
+ * <p>
+ *    Parser factory that hands out FTPFastUnixEntryParser or
+ *    FTPFastWindowsEntryParser based on the server system key.  Any other
+ *    system type (VMS, OS/400, etc) falls back to the stock commons-net
+ *    factory.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPListingParserFactory implements FTPFileEntryParserFactory {
+	private FTPFileEntryParserFactory fallbackFactory;
+	
+	public FTPListingParserFactory(){
+		fallbackFactory = new DefaultFTPFileEntryParserFactory();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.apache.commons.net.ftp.parser.FTPFileEntryParserFactory#createFileEntryParser(java.lang.String)
+	 */
+	public FTPFileEntryParser createFileEntryParser(String key) throws ParserInitializationException {
+		if(key != null){
+			String upperKey = key.toUpperCase();
+			if(upperKey.indexOf(FTPClientConfig.SYST_NT) >= 0){
+				return new FTPFastWindowsEntryParser();
+			}
+			if((upperKey.indexOf(FTPClientConfig.SYST_UNIX) >= 0) || (upperKey.indexOf(FTPClientConfig.SYST_L8) >= 0)){
+				return new FTPFastUnixEntryParser();
+			}
+		}
+		
+		return fallbackFactory.createFileEntryParser(key);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.apache.commons.net.ftp.parser.FTPFileEntryParserFactory#createFileEntryParser(org.apache.commons.net.ftp.FTPClientConfig)
+	 */
+	public FTPFileEntryParser createFileEntryParser(FTPClientConfig config) throws ParserInitializationException {
+		return createFileEntryParser(config.getServerSystemKey());
+	}
+}
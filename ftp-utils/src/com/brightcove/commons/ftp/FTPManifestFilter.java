@@ -0,0 +1,309 @@
+package com.brightcove.commons.ftp;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+/**
+ * <p>
+ *    Filters applied by FTPManifestThread while it walks the server, so that
+ *    unwanted subtrees are never listed at all.
+ * </p>
+ * 
+ * <p>
+ *    Path globs are matched against full remote paths ("/videos/2012/a.flv"):<ul>
+ *        <li>*:  any characters except '/'</li>
+ *        <li>**: any characters including '/' (any number of directories)</li>
+ *        <li>?:  any single character except '/'</li>
+ *    </ul>
+ *    A directory is entered only if it isn't excluded, is no deeper than
+ *    maxDepth and could still contain a path matching one of the include
+ *    globs.  A file is kept only if it isn't excluded, matches an include
+ *    glob, matches fileNameRegex and was modified after modifiedAfter.  Any
+ *    filter left null (or empty) lets everything through.
+ * </p>
+ * 
+ * <p>
+ *    Listings that don't return timestamps (e.g. NLST) can't be checked
+ *    against modifiedAfter, so those files are kept.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class FTPManifestFilter {
+	private List<String> includeGlobs;
+	private List<String> excludeGlobs;
+	private Integer      maxDepth;
+	private String       fileNameRegex;
+	private Date         modifiedAfter;
+	
+	private List<Pattern>   includePatterns;
+	private List<Pattern[]> includeSegments;
+	private List<Pattern>   excludePatterns;
+	private Pattern         fileNamePattern;
+	
+	/**
+	 * <p>
+	 *    Constructor for a filter that accepts everything.
+	 * </p>
+	 */
+	public FTPManifestFilter(){
+		this(null, null, null, null, null);
+	}
+	
+	/**
+	 * <p>
+	 *    Constructor specifying everything.
+	 * </p>
+	 * 
+	 * @param includeGlobs  Paths to keep (null or empty for all)
+	 * @param excludeGlobs  Paths (files or whole subtrees) to skip
+	 * @param maxDepth      Number of directory levels below the start directory to descend (null for no limit)
+	 * @param fileNameRegex Regex file names must contain a match for (null for all)
+	 * @param modifiedAfter Only keep files modified after this time (null for all)
+	 */
+	public FTPManifestFilter(List<String> includeGlobs, List<String> excludeGlobs, Integer maxDepth, String fileNameRegex, Date modifiedAfter){
+		setIncludeGlobs(includeGlobs);
+		setExcludeGlobs(excludeGlobs);
+		setFileNameRegex(fileNameRegex);
+		
+		this.maxDepth      = maxDepth;
+		this.modifiedAfter = modifiedAfter;
+	}
+	
+	/**
+	 * <p>
+	 *    Decides whether a directory should be listed
+	 * </p>
+	 * 
+	 * @param path  Full path of the directory
+	 * @param depth Depth below the start directory (its children are depth 1)
+	 * @return True if the directory should be traversed
+	 */
+	public boolean shouldEnterDirectory(String path, int depth){
+		if((maxDepth != null) && (depth > maxDepth)){
+			return false;
+		}
+		if(matchesAny(excludePatterns, path)){
+			return false;
+		}
+		if(includeSegments.isEmpty()){
+			return true;
+		}
+		
+		String[] pathSegments = splitPath(path);
+		for(Pattern[] globSegments : includeSegments){
+			if(couldContainMatch(globSegments, pathSegments)){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * <p>
+	 *    Decides whether a file belongs in the manifest
+	 * </p>
+	 * 
+	 * @param path Full path of the file
+	 * @param file Listing entry for the file
+	 * @return True if the file should be recorded
+	 */
+	public boolean acceptFile(String path, FTPFile file){
+		if((fileNamePattern != null) && (! fileNamePattern.matcher(file.getName()).find())){
+			return false;
+		}
+		if(matchesAny(excludePatterns, path)){
+			return false;
+		}
+		if((! includePatterns.isEmpty()) && (! matchesAny(includePatterns, path))){
+			return false;
+		}
+		if((modifiedAfter != null) && (file.getTimestamp() != null)){
+			if(! file.getTimestamp().getTime().after(modifiedAfter)){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * <p>
+	 *    Returns true if nothing would ever be filtered out
+	 * </p>
+	 * 
+	 * @return True if no filters are set
+	 */
+	public boolean isEmpty(){
+		return includePatterns.isEmpty() && excludePatterns.isEmpty() && (maxDepth == null) && (fileNamePattern == null) && (modifiedAfter == null);
+	}
+	
+	/**
+	 * <p>
+	 *    Checks whether paths under a directory could match a glob, by
+	 *    comparing the directory against the glob one segment at a time.
+	 *    Once a ** segment (stored as null) is reached anything below could
+	 *    match.
+	 * </p>
+	 */
+	private static boolean couldContainMatch(Pattern[] globSegments, String[] pathSegments){
+		for(int i=0; i<pathSegments.length; i++){
+			if(i >= globSegments.length){
+				// Glob ends above this directory
+				return false;
+			}
+			if(globSegments[i] == null){
+				// ** segment
+				return true;
+			}
+			if(! globSegments[i].matcher(pathSegments[i]).matches()){
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean matchesAny(List<Pattern> patterns, String path){
+		for(Pattern pattern : patterns){
+			if(pattern.matcher(path).matches()){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static String[] splitPath(String path){
+		List<String> segments = new ArrayList<String>();
+		for(String segment : path.split("/")){
+			if(segment.length() > 0){
+				segments.add(segment);
+			}
+		}
+		return segments.toArray(new String[segments.size()]);
+	}
+	
+	/**
+	 * <p>
+	 *    Converts a path glob to a regex Pattern
+	 * </p>
+	 * 
+	 * @param glob Glob using *, ** and ?
+	 * @return Compiled pattern matching the whole path
+	 */
+	static Pattern globToPattern(String glob){
+		StringBuilder regex = new StringBuilder();
+		for(int i=0; i<glob.length(); i++){
+			char c = glob.charAt(i);
+			if(c == '*'){
+				if((i + 1 < glob.length()) && (glob.charAt(i + 1) == '*')){
+					i++;
+					if((i + 1 < glob.length()) && (glob.charAt(i + 1) == '/')){
+						// "**/" is zero or more whole directories
+						regex.append("(.*/)?");
+						i++;
+					}
+					else{
+						regex.append(".*");
+					}
+				}
+				else{
+					regex.append("[^/]*");
+				}
+			}
+			else if(c == '?'){
+				regex.append("[^/]");
+			}
+			else if("\\.[]{}()+-^$|".indexOf(c) >= 0){
+				regex.append('\\').append(c);
+			}
+			else{
+				regex.append(c);
+			}
+		}
+		return Pattern.compile(regex.toString());
+	}
+	
+	private static List<Pattern> compileGlobs(List<String> globs){
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		if(globs != null){
+			for(String glob : globs){
+				patterns.add(globToPattern(glob));
+			}
+		}
+		return patterns;
+	}
+	
+	public List<String> getIncludeGlobs(){
+		return includeGlobs;
+	}
+	
+	public void setIncludeGlobs(List<String> includeGlobs){
+		this.includeGlobs = includeGlobs;
+		
+		includePatterns = compileGlobs(includeGlobs);
+		includeSegments = new ArrayList<Pattern[]>();
+		if(includeGlobs != null){
+			for(String glob : includeGlobs){
+				String[]  globSegments = splitPath(glob);
+				Pattern[] patterns     = new Pattern[globSegments.length];
+				for(int i=0; i<globSegments.length; i++){
+					if(! globSegments[i].contains("**")){
+						patterns[i] = globToPattern(globSegments[i]);
+					}
+				}
+				includeSegments.add(patterns);
+			}
+		}
+	}
+	
+	public List<String> getExcludeGlobs(){
+		return excludeGlobs;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the paths to skip.  A directory matching one of these globs is
+	 *    never entered, so everything below it is skipped too.
+	 * </p>
+	 * 
+	 * @param excludeGlobs Globs of paths to skip
+	 */
+	public void setExcludeGlobs(List<String> excludeGlobs){
+		this.excludeGlobs = excludeGlobs;
+		
+		excludePatterns = compileGlobs(excludeGlobs);
+	}
+	
+	public Integer getMaxDepth(){
+		return maxDepth;
+	}
+	
+	public void setMaxDepth(Integer maxDepth){
+		this.maxDepth = maxDepth;
+	}
+	
+	public String getFileNameRegex(){
+		return fileNameRegex;
+	}
+	
+	public void setFileNameRegex(String fileNameRegex){
+		this.fileNameRegex = fileNameRegex;
+		
+		fileNamePattern = null;
+		if(fileNameRegex != null){
+			fileNamePattern = Pattern.compile(fileNameRegex);
+		}
+	}
+	
+	public Date getModifiedAfter(){
+		return modifiedAfter;
+	}
+	
+	public void setModifiedAfter(Date modifiedAfter){
+		this.modifiedAfter = modifiedAfter;
+	}
+}
@@ -19,6 +19,12 @@ import org.apache.commons.net.ftp.FTPFile;
 public class FTPManifestThread extends FTPThread {
 	String startDirectory;
 	
+	FTPListingMode listingMode;
+	String         nlstFileRegex;
+	FTPLister      lister;
+	
+	FTPManifestFilter filter;
+	
 	Map<String, FTPManifestEntry> processedDirectories;
 	
 	public FTPManifestThread(String serverName, Integer serverPort, String username, String password, Boolean passiveTransfer, String startDirectory, Map<String, FTPManifestEntry> processedDirectories, Boolean debug) {
@@ -37,6 +43,10 @@ public class FTPManifestThread extends FTPThread {
 		this.skipTransfer        = null;
 		this.removeSource        = null;
 		
+		this.listingMode         = FTPListingMode.DEFAULT;
+		this.nlstFileRegex       = null;
+		this.filter              = new FTPManifestFilter();
+		
 		exception = null;
 		
 		ftpc = new FTPClient();
@@ -54,7 +64,10 @@ public class FTPManifestThread extends FTPThread {
 		
 		log.info("Generating a manifest for files on server \"" + serverName + "\".");
 		try{
-			traverseDirectory(startDirectory);
+			lister = new FTPLister(ftpc, serverName, serverPort, listingMode, nlstFileRegex);
+			log.info("Listing directories with mode '" + lister.resolveMode() + "'.");
+			
+			traverseDirectory(startDirectory, 0);
 			printFTPCommandInfo("end of manifest generation");
 		}
 		catch(Exception e){
@@ -64,25 +77,25 @@ public class FTPManifestThread extends FTPThread {
 		disconnect();
 	}
 	
-	private void traverseDirectory(String directory) throws IOException {
+	private void traverseDirectory(String directory, int depth) throws IOException {
 		log.info("---------- Traversing directory '" + directory + "'.");
 		
 		ftpc.changeWorkingDirectory(directory);
 		printFTPCommandInfo("change directory (" + directory + ")");
 		
-		FTPFile[] files = ftpc.listFiles();
+		FTPFile[] files = lister.list();
 		printFTPCommandInfo("list files (" + directory + ")");
 		
 		if(! directory.endsWith("/")){
 			directory += "/";
 		}
 		
-		String fileList = "";
+		StringBuilder fileList = new StringBuilder();
 		for(FTPFile file : files){
-			if(! fileList.equals("")){
-				fileList += ",";
+			if(fileList.length() > 0){
+				fileList.append(",");
 			}
-			fileList += file.getName();
+			fileList.append(file.getName());
 		}
 		log.info("**********     Files: [" + fileList + "].");
 		
@@ -100,13 +113,35 @@ public class FTPManifestThread extends FTPThread {
 				if(file.getType() == FTPFile.DIRECTORY_TYPE){
 					type = FTPManifestEntryType.DIRECTORY;
 				}
+				else if(file.getType() == FTPFile.UNKNOWN_TYPE){
+					if((! filter.shouldEnterDirectory(path, depth + 1)) && (! filter.acceptFile(path, file))){
+						// Filtered out either way - don't bother probing
+						continue;
+					}
+					
+					// Name only listing - see if we can change into it
+					if(ftpc.changeWorkingDirectory(path)){
+						type = FTPManifestEntryType.DIRECTORY;
+					}
+					printFTPCommandInfo("probe entry type (" + path + ")");
+				}
+				
+				if(type.equals(FTPManifestEntryType.DIRECTORY)){
+					if(! filter.shouldEnterDirectory(path, depth + 1)){
+						log.info("Skipping directory '" + path + "' (filtered).");
+						continue;
+					}
+				}
+				else if(! filter.acceptFile(path, file)){
+					continue;
+				}
 				
 				FTPManifestEntry entry = new FTPManifestEntry(path, file.getName(), type, false);
 				
 				processedDirectories.put(directory + file.getName(), entry);
 				
 				if(type.equals(FTPManifestEntryType.DIRECTORY)){
-					traverseDirectory(path);
+					traverseDirectory(path, depth + 1);
 				}
 				
 				log.info("Completed entry '" + path + "'.");
@@ -122,4 +157,39 @@ public class FTPManifestThread extends FTPThread {
 	public String getStartDirectory(){
 		return startDirectory;
 	}
+	
+	public FTPListingMode getListingMode(){
+		return listingMode;
+	}
+	
+	public void setListingMode(FTPListingMode listingMode){
+		this.listingMode = listingMode;
+	}
+	
+	public String getNlstFileRegex(){
+		return nlstFileRegex;
+	}
+	
+	public void setNlstFileRegex(String nlstFileRegex){
+		this.nlstFileRegex = nlstFileRegex;
+	}
+	
+	public FTPManifestFilter getFilter(){
+		return filter;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the filters applied while traversing.  Directories the filter
+	 *    rejects are never listed.
+	 * </p>
+	 * 
+	 * @param filter Traversal filter (null to accept everything)
+	 */
+	public void setFilter(FTPManifestFilter filter){
+		if(filter == null){
+			filter = new FTPManifestFilter();
+		}
+		this.filter = filter;
+	}
 }
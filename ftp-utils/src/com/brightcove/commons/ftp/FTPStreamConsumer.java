@@ -0,0 +1,28 @@
+package com.brightcove.commons.ftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ *    Processes downloaded content by reading it directly from the FTP data
+ *    connection (e.g. parsing a feed), so it never has to land on disk.
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public interface FTPStreamConsumer {
+	/**
+	 * <p>
+	 *    Reads the downloaded content.  Anything not read by the time this
+	 *    returns is read to the end and thrown away by the caller, so the
+	 *    transfer still completes normally.  The stream is closed by the
+	 *    caller.
+	 * </p>
+	 * 
+	 * @param in Stream connected to the remote file
+	 * @throws IOException If the content can't be read or processed
+	 */
+	public void readFrom(InputStream in) throws IOException;
+}
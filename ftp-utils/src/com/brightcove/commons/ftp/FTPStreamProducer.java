@@ -0,0 +1,42 @@
+package com.brightcove.commons.ftp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>
+ *    Generates content to upload by writing it directly into the FTP data
+ *    connection, so nothing has to be written to a temporary file first.
+ * </p>
+ * 
+ * <p>
+ *    Example usage:
+ *    <pre>
+ *    uploader.addStreamUploadMapping(new FTPStreamProducer() {
+ *        public void writeTo(OutputStream out) throws IOException {
+ *            try{
+ *                XalanUtils.writeWithTrAX(videos.toXml(), out);
+ *            }
+ *            catch(Exception e){
+ *                throw new IOException("Couldn't write videos XML: " + e);
+ *            }
+ *        }
+ *    }, "/metadata/videos.xml");
+ *    </pre>
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public interface FTPStreamProducer {
+	/**
+	 * <p>
+	 *    Writes the content to upload.  The stream is closed by the caller
+	 *    once this returns, and should not be closed here.
+	 * </p>
+	 * 
+	 * @param out Stream connected to the remote file
+	 * @throws IOException If the content can't be generated or written
+	 */
+	public void writeTo(OutputStream out) throws IOException;
+}
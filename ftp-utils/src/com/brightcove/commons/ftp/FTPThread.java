@@ -1,6 +1,13 @@
 package com.brightcove.commons.ftp;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.logging.Logger;
 
 import org.apache.commons.net.ftp.FTP;
@@ -21,6 +28,8 @@ public class FTPThread extends Thread {
 	
 	FTPClient ftpc;
 	
+	FTPConcurrencyController concurrencyController;
+	
 	public FTPThread() {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 		
@@ -69,9 +78,14 @@ public class FTPThread extends Thread {
 		try{
 			ftpc.connect(serverName, serverPort);
 			printFTPCommandInfo("connect");
+			recordReply();
 			
-			ftpc.login(username, password);
+			Boolean loggedIn = ftpc.login(username, password);
 			printFTPCommandInfo("login");
+			recordReply();
+			if((! loggedIn) && (concurrencyController != null)){
+				concurrencyController.recordConnectFailure();
+			}
 			
 			ftpc.setFileType(FTP.BINARY_FILE_TYPE);
 			printFTPCommandInfo("set file type");
@@ -89,6 +103,9 @@ public class FTPThread extends Thread {
 		}
 		catch(Exception e){
 			exception = e;
+			if(concurrencyController != null){
+				concurrencyController.recordConnectFailure();
+			}
 		}
 		
 		return false;
@@ -138,6 +155,184 @@ public class FTPThread extends Thread {
 		exception = null;
 	}
 	
+	/**
+	 * <p>
+	 *    Passes the last reply code to the concurrency controller, if any
+	 * </p>
+	 */
+	public void recordReply() {
+		if(concurrencyController != null){
+			concurrencyController.recordReply(ftpc.getReplyCode());
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Passes a failed transfer to the concurrency controller, if any.
+	 *    Only a connection closed by the server counts as congestion.
+	 * </p>
+	 * 
+	 * @param e Exception the transfer failed with
+	 */
+	public void recordFailure(Exception e) {
+		if((concurrencyController != null) && (e instanceof FTPConnectionClosedException)){
+			concurrencyController.recordConnectionClosed();
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Passes a transferred byte count to the concurrency controller, if any
+	 * </p>
+	 * 
+	 * @param bytes Number of bytes transferred
+	 */
+	public void recordBytes(long bytes) {
+		if(concurrencyController != null){
+			concurrencyController.recordBytes(bytes);
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Uploads whatever a producer writes, streaming it straight into the
+	 *    data connection.  If the producer fails, the partial file is
+	 *    removed from the server.
+	 * </p>
+	 * 
+	 * @param remoteFile Path on the server to store to
+	 * @param producer   Producer of the content
+	 * @return Number of bytes uploaded
+	 * @throws IOException If the producer fails or the server rejects the upload
+	 */
+	public long storeStream(String remoteFile, FTPStreamProducer producer) throws IOException {
+		OutputStream os = ftpc.storeFileStream(remoteFile);
+		printFTPCommandInfo("store file stream (" + remoteFile + ")");
+		if(os == null){
+			recordReply();
+			throw new IOException("Couldn't open data connection to upload \"" + remoteFile + "\".");
+		}
+		
+		CountingOutputStream out     = new CountingOutputStream(new BufferedOutputStream(os, 64 * 1024));
+		Boolean              written = false;
+		try{
+			producer.writeTo(out);
+			out.close();
+			written = true;
+		}
+		finally{
+			if(! written){
+				abandonTransfer(out, "store", remoteFile);
+				deletePartialFile(remoteFile);
+			}
+		}
+		
+		Boolean completed = ftpc.completePendingCommand();
+		printFTPCommandInfo("complete store (" + remoteFile + ")");
+		recordReply();
+		if(! completed){
+			deletePartialFile(remoteFile);
+			throw new IOException("Upload of \"" + remoteFile + "\" failed.");
+		}
+		
+		recordBytes(out.count);
+		return out.count;
+	}
+	
+	/**
+	 * <p>
+	 *    Downloads a file, handing the data connection straight to a consumer
+	 * </p>
+	 * 
+	 * @param remoteFile Path on the server to retrieve
+	 * @param consumer   Consumer of the content
+	 * @return Number of bytes downloaded
+	 * @throws IOException If the consumer fails or the server rejects the download
+	 */
+	public long retrieveStream(String remoteFile, FTPStreamConsumer consumer) throws IOException {
+		InputStream is = ftpc.retrieveFileStream(remoteFile);
+		printFTPCommandInfo("retrieve file stream (" + remoteFile + ")");
+		if(is == null){
+			recordReply();
+			throw new IOException("Couldn't open data connection to download \"" + remoteFile + "\".");
+		}
+		
+		CountingInputStream in   = new CountingInputStream(new BufferedInputStream(is, 64 * 1024));
+		Boolean             read = false;
+		try{
+			consumer.readFrom(in);
+			
+			// Closing the data connection before the end of the file makes
+			// the server fail the transfer (426), so read what's left
+			byte[] rest = new byte[8192];
+			while(in.read(rest) >= 0){
+			}
+			in.close();
+			read = true;
+		}
+		finally{
+			if(! read){
+				abandonTransfer(in, "retrieve", remoteFile);
+			}
+		}
+		
+		Boolean completed = ftpc.completePendingCommand();
+		printFTPCommandInfo("complete retrieve (" + remoteFile + ")");
+		recordReply();
+		if(! completed){
+			throw new IOException("Download of \"" + remoteFile + "\" failed.");
+		}
+		
+		recordBytes(in.count);
+		return in.count;
+	}
+	
+	/**
+	 * <p>
+	 *    Closes the data connection of a failed transfer and reads the
+	 *    server's reply to it, so the next command on the control connection
+	 *    doesn't get the stale reply
+	 * </p>
+	 * 
+	 * @param stream     Data connection stream
+	 * @param command    Name of the transfer, for logging
+	 * @param remoteFile Path on the server being transferred
+	 */
+	private void abandonTransfer(Closeable stream, String command, String remoteFile) {
+		try{
+			stream.close();
+		}
+		catch(IOException ioe){
+			log.info("Exception thrown closing failed transfer - '" + ioe + "'.");
+		}
+		try{
+			ftpc.completePendingCommand();
+			printFTPCommandInfo("complete " + command + " (" + remoteFile + ")");
+			recordReply();
+		}
+		catch(IOException ioe){
+			log.info("Exception thrown closing failed transfer - '" + ioe + "'.");
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Removes a truncated upload, which the server would otherwise keep
+	 *    as if it were complete
+	 * </p>
+	 * 
+	 * @param remoteFile Path on the server to delete
+	 */
+	private void deletePartialFile(String remoteFile) {
+		try{
+			ftpc.deleteFile(remoteFile);
+			printFTPCommandInfo("delete partial file (" + remoteFile + ")");
+		}
+		catch(IOException ioe){
+			log.info("Exception thrown deleting partial file - '" + ioe + "'.");
+		}
+	}
+	
 	/**
 	 * <p>
 	 *    Utility method to print more detailed information about an FTP command
@@ -165,6 +360,8 @@ public class FTPThread extends Thread {
 	public Exception getException()       { return exception;       }
 	public FTPClient getFtpClient()       { return ftpc;            }
 	
+	public FTPConcurrencyController getConcurrencyController() { return concurrencyController; }
+	
 	public void setLog(Logger log)                          { this.log             = log;             }
 	public void setServerName(String serverName)            { this.serverName      = serverName;      }
 	public void setServerPort(Integer serverPort)           { this.serverPort      = serverPort;      }
@@ -176,4 +373,58 @@ public class FTPThread extends Thread {
 	public void setDebug(Boolean debug)                     { this.debug           = debug;           }
 	public void setException(Exception exception)           { this.exception       = exception;       }
 	public void setFtpClient(FTPClient ftpc)                { this.ftpc            = ftpc;            }
+	
+	public void setConcurrencyController(FTPConcurrencyController concurrencyController) { this.concurrencyController = concurrencyController; }
+	
+	/**
+	 * <p>
+	 *    Counts bytes written, for the concurrency controller
+	 * </p>
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		long count = 0;
+		
+		CountingOutputStream(OutputStream out){
+			super(out);
+		}
+		
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+		
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+	
+	/**
+	 * <p>
+	 *    Counts bytes read, for the concurrency controller
+	 * </p>
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		long count = 0;
+		
+		CountingInputStream(InputStream in){
+			super(in);
+		}
+		
+		public int read() throws IOException {
+			int b = in.read();
+			if(b >= 0){
+				count++;
+			}
+			return b;
+		}
+		
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = in.read(b, off, len);
+			if(read > 0){
+				count += read;
+			}
+			return read;
+		}
+	}
 }
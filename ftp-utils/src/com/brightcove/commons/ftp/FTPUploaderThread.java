@@ -19,12 +19,14 @@ import org.apache.commons.net.ftp.FTPClient;
  *
  */
 public class FTPUploaderThread extends FTPThread {
-	private List<UploadMapping> uploadMappings;
+	private List<UploadMapping>       uploadMappings;
+	private List<StreamUploadMapping> streamUploadMappings;
 	
 	public FTPUploaderThread(String serverName, Integer serverPort, String username, String password, Boolean skipTransfer, Boolean removeSource, Boolean passiveTransfer, List<UploadMapping> uploadMappings, Boolean debug) {
 		log = Logger.getLogger(this.getClass().getCanonicalName());
 		
-		this.uploadMappings = uploadMappings;
+		this.uploadMappings       = uploadMappings;
+		this.streamUploadMappings = new ArrayList<StreamUploadMapping>();
 		
 		this.serverName          = serverName;
 		this.serverPort          = serverPort;
@@ -57,9 +59,13 @@ public class FTPUploaderThread extends FTPThread {
 				log.info("\tUploading file \"" + localFile.getAbsolutePath() + "\".");
 				
 				FileInputStream fis = new FileInputStream(localFile);
-				ftpc.storeFile(remoteFile, fis);
+				Boolean stored = ftpc.storeFile(remoteFile, fis);
 				printFTPCommandInfo("store file (" + remoteFile + ")");
 				fis.close();
+				recordReply();
+				if(stored){
+					recordBytes(localFile.length());
+				}
 				
 				if(removeSource){
 					log.info("\tRemoving source file \"" + localFile.getAbsolutePath() + "\" per request.");
@@ -69,10 +75,19 @@ public class FTPUploaderThread extends FTPThread {
 				}
 			}
 			
+			for(StreamUploadMapping streamUploadMapping : streamUploadMappings){
+				String remoteFile = streamUploadMapping.getDestination();
+				
+				log.info("\tUploading stream to \"" + remoteFile + "\".");
+				long bytes = storeStream(remoteFile, streamUploadMapping.getSource());
+				log.info("\tUploaded " + bytes + " bytes to \"" + remoteFile + "\".");
+			}
+			
 			printFTPCommandInfo("end of file transfers");
 		}
 		catch(Exception e){
 			exception = e;
+			recordFailure(e);
 		}
 		
 		disconnect();
@@ -132,4 +147,60 @@ public class FTPUploaderThread extends FTPThread {
 	public void setUploadMappings(List<UploadMapping> uploadMappings){
 		this.uploadMappings = uploadMappings;
 	}
+	
+	/**
+	 * <p>
+	 *    Clears out the queue of streams to upload
+	 * </p>
+	 */
+	public void clearStreamUploadMappings(){
+		streamUploadMappings = new ArrayList<StreamUploadMapping>();
+	}
+	
+	/**
+	 * <p>
+	 *    Adds generated content to upload.  Streams are uploaded after all
+	 *    of the files.
+	 * </p>
+	 * 
+	 * @param mapping Stream to upload
+	 */
+	public void addStreamUploadMapping(StreamUploadMapping mapping){
+		streamUploadMappings.add(mapping);
+	}
+	
+	/**
+	 * <p>
+	 *    Adds generated content to upload
+	 * </p>
+	 * 
+	 * @param source Producer that writes the content
+	 * @param destination Where on server to upload the content to
+	 */
+	public void addStreamUploadMapping(FTPStreamProducer source, String destination){
+		StreamUploadMapping mapping = new StreamUploadMapping(source, destination);
+		addStreamUploadMapping(mapping);
+	}
+	
+	/**
+	 * <p>
+	 *    Returns a list of all streams to be uploaded
+	 * </p>
+	 * 
+	 * @return List of streams to upload
+	 */
+	public List<StreamUploadMapping> getStreamUploadMappings(){
+		return streamUploadMappings;
+	}
+	
+	/**
+	 * <p>
+	 *    Sets the list of all streams to be uploaded
+	 * </p>
+	 * 
+	 * @param streamUploadMappings List of streams to upload
+	 */
+	public void setStreamUploadMappings(List<StreamUploadMapping> streamUploadMappings){
+		this.streamUploadMappings = streamUploadMappings;
+	}
 }
@@ -0,0 +1,56 @@
+package com.brightcove.commons.ftp;
+
+/**
+ * <p>
+ *    Provides a mapping between a source path on an FTP server and a stream
+ *    consumer
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class StreamDownloadMapping implements FTPMapping<String, FTPStreamConsumer> {
+	private FTPStreamConsumer dest;
+	private String            source;
+	
+	/**
+	 * <p>
+	 *    Default constructor
+	 * </p>
+	 * 
+	 * @param source Source path on FTP server
+	 * @param dest Consumer that reads the downloaded content
+	 */
+	public StreamDownloadMapping(String source, FTPStreamConsumer dest){
+		this.source = source;
+		this.dest   = dest;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.ftp.FTPMapping#setSource(java.lang.Object)
+	 */
+	public void setSource(String source){
+		this.source = source;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.ftp.FTPMapping#getSource()
+	 */
+	public String getSource(){
+		return source;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.ftp.FTPMapping#setDestination(java.lang.Object)
+	 */
+	public void setDestination(FTPStreamConsumer dest){
+		this.dest = dest;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.ftp.FTPMapping#getDestination()
+	 */
+	public FTPStreamConsumer getDestination(){
+		return dest;
+	}
+}
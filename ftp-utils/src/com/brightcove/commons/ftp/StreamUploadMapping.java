@@ -0,0 +1,56 @@
+package com.brightcove.commons.ftp;
+
+/**
+ * <p>
+ *    Provides a mapping between a stream producer and a destination path on
+ *    an FTP server
+ * </p>
+ * 
+ * @author <a href="https://github.com/three4clavin">three4clavin</a>
+ * 
+ */
+public class StreamUploadMapping implements FTPMapping<FTPStreamProducer, String> {
+	private FTPStreamProducer source;
+	private String            dest;
+	
+	/**
+	 * <p>
+	 *    Default constructor
+	 * </p>
+	 * 
+	 * @param source Producer that writes the content to upload
+	 * @param dest Destination path on FTP server
+	 */
+	public StreamUploadMapping(FTPStreamProducer source, String dest){
+		this.source = source;
+		this.dest   = dest;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.ftp.FTPMapping#setSource(java.lang.Object)
+	 */
+	public void setSource(FTPStreamProducer source){
+		this.source = source;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.ftp.FTPMapping#getSource()
+	 */
+	public FTPStreamProducer getSource(){
+		return source;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.ftp.FTPMapping#setDestination(java.lang.Object)
+	 */
+	public void setDestination(String path){
+		this.dest = path;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.brightcove.commons.ftp.FTPMapping#getDestination()
+	 */
+	public String getDestination(){
+		return dest;
+	}
+}
@@ -24,6 +24,8 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+import java.io.StringWriter;
+
 /**
  * This provides static methods to convert comma delimited text into a
  * JSONArray, and to covert a JSONArray into comma delimited text. Comma
@@ -40,6 +42,9 @@ SOFTWARE.
  * A comma delimited list can be converted into a JSONArray of JSONObjects.
  * The names for the elements in the JSONObjects can be taken from the names
  * in the first row.
+ * <p>
+ * To read or write tables too large to hold in memory, use a CDLReader or
+ * CDLWriter, which work a row at a time.
  * @author JSON.org
  * @version 2010-12-24
  */
@@ -142,33 +147,13 @@ public class CDL {
 	 * @return A string ending in NEWLINE.
 	 */
 	public static String rowToString(JSONArray ja) {
-	    StringBuffer sb = new StringBuffer();
-	    for (int i = 0; i < ja.length(); i += 1) {
-	        if (i > 0) {
-	            sb.append(',');
-	        }
-	        Object object = ja.opt(i);
-	        if (object != null) {
-	            String string = object.toString();
-	            if (string.length() > 0 && (string.indexOf(',') >= 0 || 
-	            		string.indexOf('\n') >= 0 || string.indexOf('\r') >= 0 || 
-	            		string.indexOf(0) >= 0 || string.charAt(0) == '"')) {
-	                sb.append('"');
-	            	int length = string.length();
-	            	for (int j = 0; j < length; j += 1) {
-	            		char c = string.charAt(j);
-	            		if (c >= ' ' && c != '"') {
-	            			sb.append(c);
-	            		}
-	                }
-	                sb.append('"');
-	            } else {
-	                sb.append(string);
-	            }
-	        }
+	    StringWriter sw = new StringWriter();
+	    try {
+	        new CDLWriter(sw).row(ja);
+	    } catch (JSONException e) {
+// A StringWriter does not fail.
 	    }
-	    sb.append('\n');
-	    return sb.toString();
+	    return sw.toString();
 	}
 
 	/**
@@ -267,13 +252,14 @@ public class CDL {
         if (names == null || names.length() == 0) {
             return null;
         }
-        StringBuffer sb = new StringBuffer();
+        StringWriter sw = new StringWriter();
+        CDLWriter writer = new CDLWriter(sw);
         for (int i = 0; i < ja.length(); i += 1) {
             JSONObject jo = ja.optJSONObject(i);
             if (jo != null) {
-                sb.append(rowToString(jo.toJSONArray(names)));
+                writer.row(names, jo);
             }
         }
-        return sb.toString();
+        return sw.toString();
     }
 }
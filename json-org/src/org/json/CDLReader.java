@@ -0,0 +1,241 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.Reader;
+
+/**
+ * A CDLReader reads comma delimited text one row at a time, so that tables
+ * of any length can be read in constant memory. Each call to
+ * <code>next</code> reads a row into a buffer that is reused for the
+ * following rows; the values of the current row are then available from
+ * <code>get</code>, or as a JSONArray or JSONObject. For example, <pre>
+ * CDLReader cdl = new CDLReader(reader);
+ * JSONArray names = cdl.next() ? cdl.toJSONArray() : null;
+ * while (cdl.next()) {
+ *     JSONObject jo = cdl.toJSONObject(names);
+ *     ...
+ * }</pre>
+ * <p>
+ * Rows are read as {@link CDL#rowToJSONArray(JSONTokener)} reads them, and
+ * the text ends at the end of input or at an empty row. A CR LF pair is
+ * taken as a single end of line.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+public class CDLReader {
+
+    /**
+     * The source of the text.
+     */
+    private final JSONTokener x;
+
+    /**
+     * The values of the current row. The array is reused from row to row.
+     */
+    private String values[] = new String[16];
+
+    /**
+     * The number of values in the current row.
+     */
+    private int width;
+
+    /**
+     * Holds the characters of a value while it is read.
+     */
+    private final StringBuilder sb = new StringBuilder();
+
+    /**
+     * Set when the end of the text has been reached.
+     */
+    private boolean done;
+
+
+    /**
+     * Construct a CDLReader over a Reader.
+     * @param reader A reader of comma delimited text.
+     */
+    public CDLReader(Reader reader) {
+        this(new JSONTokener(reader));
+    }
+
+
+    /**
+     * Construct a CDLReader over a JSONTokener.
+     * @param x A JSONTokener of comma delimited text.
+     */
+    public CDLReader(JSONTokener x) {
+        this.x = x;
+    }
+
+
+    /**
+     * Read the next row.
+     * @return true if a row was read, or false at the end of the text.
+     * @throws JSONException If the row is badly formed.
+     */
+    public boolean next() throws JSONException {
+        this.width = 0;
+        if (this.done) {
+            return false;
+        }
+        for (;;) {
+            String value = value();
+            char c = this.x.next();
+            if (value == null ||
+                    (this.width == 0 && value.length() == 0 && c != ',')) {
+                this.done = true;
+                return false;
+            }
+            if (this.width == this.values.length) {
+                String more[] = new String[this.width * 2];
+                System.arraycopy(this.values, 0, more, 0, this.width);
+                this.values = more;
+            }
+            this.values[this.width] = value;
+            this.width += 1;
+            for (;;) {
+                if (c == ',') {
+                    break;
+                }
+                if (c != ' ') {
+                    if (c == '\r') {
+                        if (this.x.next() != '\n') {
+                            this.x.back();
+                        }
+                        return true;
+                    }
+                    if (c == '\n' || c == 0) {
+                        return true;
+                    }
+                    throw this.x.syntaxError("Bad character '" + c + "' (" +
+                            (int)c + ").");
+                }
+                c = this.x.next();
+            }
+        }
+    }
+
+
+    /**
+     * Get the next value, which may be wrapped in quotes or be empty.
+     * @return The value string, or null at the end of the text.
+     */
+    private String value() throws JSONException {
+        char c;
+        char q;
+        StringBuilder sb = this.sb;
+        do {
+            c = this.x.next();
+        } while (c == ' ' || c == '\t');
+        sb.setLength(0);
+        switch (c) {
+        case 0:
+            return null;
+        case '"':
+        case '\'':
+            q = c;
+            for (;;) {
+                c = this.x.next();
+                if (c == q) {
+                    break;
+                }
+                if (c == 0 || c == '\n' || c == '\r') {
+                    throw this.x.syntaxError("Missing close quote '" + q +
+                            "'.");
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        default:
+            for (;;) {
+                if (c == ',' || c == 0 || c == '\n' || c == '\r') {
+                    if (c != 0) {
+                        this.x.back();
+                    }
+                    return sb.toString().trim();
+                }
+                sb.append(c);
+                c = this.x.next();
+            }
+        }
+    }
+
+
+    /**
+     * Get the number of values in the current row.
+     * @return The number of values, or 0 before the first row and after the
+     *  last.
+     */
+    public int width() {
+        return this.width;
+    }
+
+
+    /**
+     * Get a value of the current row.
+     * @param index The index, starting with 0.
+     * @return The value string, or null if the row has no such value.
+     */
+    public String get(int index) {
+        return index >= 0 && index < this.width ? this.values[index] : null;
+    }
+
+
+    /**
+     * Produce a JSONArray of strings from the current row.
+     * @return A JSONArray of strings, or null if there is no current row.
+     */
+    public JSONArray toJSONArray() {
+        if (this.width == 0) {
+            return null;
+        }
+        JSONArray ja = new JSONArray();
+        for (int i = 0; i < this.width; i += 1) {
+            ja.put(this.values[i]);
+        }
+        return ja;
+    }
+
+
+    /**
+     * Produce a JSONObject from the current row, using a parallel JSONArray
+     * of strings to provide the names of the elements.
+     * @param names A JSONArray of names, commonly taken from the first row.
+     * @return A JSONObject combining the names and values, or null if there
+     *  is no current row or no names.
+     * @throws JSONException If a name is not a string.
+     */
+    public JSONObject toJSONObject(JSONArray names) throws JSONException {
+        if (names == null || names.length() == 0 || this.width == 0) {
+            return null;
+        }
+        JSONObject jo = new JSONObject();
+        for (int i = 0; i < names.length(); i += 1) {
+            jo.put(names.getString(i), get(i));
+        }
+        return jo;
+    }
+}
@@ -0,0 +1,176 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A CDLWriter writes comma delimited text one row at a time, straight to a
+ * Writer, so that tables of any length can be written in constant memory.
+ * Values are written as {@link CDL#rowToString(JSONArray)} writes them:
+ * values containing commas, line breaks or a leading quote are wrapped in
+ * quotes, with troublesome characters removed.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+public class CDLWriter {
+
+    /**
+     * The writer that will receive the output.
+     */
+    private final Writer writer;
+
+    /**
+     * The number of values written on the current row.
+     */
+    private int width;
+
+
+    /**
+     * Construct a CDLWriter.
+     * @param writer The writer that will receive the output.
+     */
+    public CDLWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+
+    /**
+     * Write a value on the current row.
+     * @param object The value, or null for an empty value.
+     * @return this
+     * @throws JSONException If the value could not be written.
+     */
+    public CDLWriter value(Object object) throws JSONException {
+        Writer writer = this.writer;
+        try {
+            if (this.width > 0) {
+                writer.write(',');
+            }
+            this.width += 1;
+            if (object == null) {
+                return this;
+            }
+            String string = object.toString();
+            int length = string.length();
+            if (length > 0 && (string.indexOf(',') >= 0 ||
+                    string.indexOf('\n') >= 0 || string.indexOf('\r') >= 0 ||
+                    string.indexOf(0) >= 0 || string.charAt(0) == '"')) {
+                writer.write('"');
+                int from = 0;
+                for (int i = 0; i < length; i += 1) {
+                    char c = string.charAt(i);
+                    if (c < ' ' || c == '"') {
+                        writer.write(string, from, i - from);
+                        from = i + 1;
+                    }
+                }
+                writer.write(string, from, length - from);
+                writer.write('"');
+            } else {
+                writer.write(string);
+            }
+            return this;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * End the current row.
+     * @return this
+     * @throws JSONException If the line break could not be written.
+     */
+    public CDLWriter endRow() throws JSONException {
+        try {
+            this.writer.write('\n');
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.width = 0;
+        return this;
+    }
+
+
+    /**
+     * Write a row of the values in a JSONArray.
+     * @param ja A JSONArray of values.
+     * @return this
+     * @throws JSONException If the row could not be written.
+     */
+    public CDLWriter row(JSONArray ja) throws JSONException {
+        for (int i = 0; i < ja.length(); i += 1) {
+            value(ja.opt(i));
+        }
+        return endRow();
+    }
+
+
+    /**
+     * Write a row of the values in a JSONObject, in the order of a list of
+     * names, without building a JSONArray for it.
+     * @param names A JSONArray of names.
+     * @param jo A JSONObject.
+     * @return this
+     * @throws JSONException If a name is not a string, or the row could not
+     *  be written.
+     */
+    public CDLWriter row(JSONArray names, JSONObject jo) throws JSONException {
+        for (int i = 0; i < names.length(); i += 1) {
+            value(jo.opt(names.getString(i)));
+        }
+        return endRow();
+    }
+
+
+    /**
+     * Write the current row of a CDLReader, for copying a table a row at a
+     * time.
+     * @param reader A CDLReader.
+     * @return this
+     * @throws JSONException If the row could not be written.
+     */
+    public CDLWriter row(CDLReader reader) throws JSONException {
+        for (int i = 0; i < reader.width(); i += 1) {
+            value(reader.get(i));
+        }
+        return endRow();
+    }
+
+
+    /**
+     * Flush the writer.
+     * @throws JSONException If the writer could not be flushed.
+     */
+    public void flush() throws JSONException {
+        try {
+            this.writer.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+}
@@ -24,6 +24,8 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+import java.io.IOException;
+
 /**
  * Convert a web browser cookie specification to a JSONObject and back.
  * JSON and Cookies are both notations for name/value pairs.
@@ -45,21 +47,20 @@ public class Cookie {
      * @return       The escaped result.
      */
     public static String escape(String string) {
-        char         c;
-        String       s = string.trim();
-        StringBuffer sb = new StringBuffer();
-        int          length = s.length();
-        for (int i = 0; i < length; i += 1) {
-            c = s.charAt(i);
-            if (c < ' ' || c == '+' || c == '%' || c == '=' || c == ';') {
-                sb.append('%');
-                sb.append(Character.forDigit((char)((c >>> 4) & 0x0f), 16));
-                sb.append(Character.forDigit((char)(c & 0x0f), 16));
-            } else {
-                sb.append(c);
-            }
-        }
-        return sb.toString();
+        return Escaper.COOKIE.escape(string.trim());
+    }
+
+
+    /**
+     * Append a string to an Appendable with the escapes of
+     * {@link #escape(String)}, without building an escaped copy.
+     * @param string The source string.
+     * @param out The Appendable, such as a StringBuilder or Writer.
+     * @throws IOException If the Appendable cannot be written.
+     */
+    public static void escape(String string, Appendable out)
+            throws IOException {
+        Escaper.COOKIE.escape(string.trim(), out);
     }
 
 
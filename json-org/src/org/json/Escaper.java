@@ -0,0 +1,203 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An Escaper replaces the characters of a string that are special in some
+ * syntax with escape sequences. It is shared by JSONObject.quote,
+ * XML.escape and Cookie.escape. The characters that need no escaping are
+ * found with a table lookup and copied in runs, and the escape sequences
+ * come from a precomputed table.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+final class Escaper {
+
+    private static final char HEX[] = "0123456789abcdef".toCharArray();
+
+    /**
+     * Backslash escapes for JSON strings: control characters, quote and
+     * backslash, "/" after "&lt;" so that JSON text can be put in HTML, and
+     * as \\uhhhh the characters U+0080 through U+009F and U+2000 through
+     * U+20FF, which confuse some browsers.
+     */
+    static final Escaper JSON;
+
+    /**
+     * Entity escapes for XML text and attribute values: &amp;, &lt;, &gt;
+     * and &quot;.
+     */
+    static final Escaper XML;
+
+    /**
+     * %hh escapes for cookies: control characters, '+', '%', '=' and ';'.
+     */
+    static final Escaper COOKIE;
+
+    static {
+        String escapes[] = new String[0xA0];
+        for (char c = 0; c < ' '; c += 1) {
+            escapes[c] = "\\u00" + HEX[c >>> 4] + HEX[c & 0x0f];
+        }
+        for (char c = 0x80; c < 0xA0; c += 1) {
+            escapes[c] = "\\u00" + HEX[c >>> 4] + HEX[c & 0x0f];
+        }
+        escapes['\b'] = "\\b";
+        escapes['\t'] = "\\t";
+        escapes['\n'] = "\\n";
+        escapes['\f'] = "\\f";
+        escapes['\r'] = "\\r";
+        escapes['"'] = "\\\"";
+        escapes['\\'] = "\\\\";
+        escapes['/'] = "\\/";
+        JSON = new Escaper(escapes, true);
+
+        escapes = new String['>' + 1];
+        escapes['&'] = "&amp;";
+        escapes['<'] = "&lt;";
+        escapes['>'] = "&gt;";
+        escapes['"'] = "&quot;";
+        XML = new Escaper(escapes, false);
+
+        escapes = new String['=' + 1];
+        for (char c = 0; c < ' '; c += 1) {
+            escapes[c] = "%" + HEX[c >>> 4] + HEX[c & 0x0f];
+        }
+        escapes['+'] = "%2b";
+        escapes['%'] = "%25";
+        escapes['='] = "%3d";
+        escapes[';'] = "%3b";
+        COOKIE = new Escaper(escapes, false);
+    }
+
+    /**
+     * The escape sequence for each character below escapes.length, or null
+     * if the character is written as it is.
+     */
+    private final String escapes[];
+
+    /**
+     * Set for JSON, where "/" is only escaped after "&lt;", and the
+     * characters U+2000 through U+20FF are escaped as well.
+     */
+    private final boolean json;
+
+
+    private Escaper(String escapes[], boolean json) {
+        this.escapes = escapes;
+        this.json = json;
+    }
+
+
+    /**
+     * Get the index of the first character at or after i that needs to be
+     * escaped, or the length of the string if there is none.
+     */
+    private int next(String string, int i) {
+        String escapes[] = this.escapes;
+        int tableLength = escapes.length;
+        int length = string.length();
+        for (; i < length; i += 1) {
+            char c = string.charAt(i);
+            if (c < tableLength) {
+                if (escapes[c] != null && (c != '/' || !this.json ||
+                        (i > 0 && string.charAt(i - 1) == '<'))) {
+                    return i;
+                }
+            } else if (this.json && c >= '\u2000' && c < '\u2100') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+
+    /**
+     * Append a string to an Appendable with its special characters escaped.
+     * @param string A String.
+     * @param out The Appendable, which is written to directly if it is a
+     *  Writer.
+     * @throws IOException If the Appendable cannot be written.
+     */
+    void escape(String string, Appendable out) throws IOException {
+        int length = string.length();
+        int start = 0;
+        int i = next(string, 0);
+        while (i < length) {
+            append(string, start, i, out);
+            char c = string.charAt(i);
+            if (c < this.escapes.length) {
+                out.append(this.escapes[c]);
+            } else {
+                out.append('\\').append('u')
+                    .append(HEX[c >>> 12]).append(HEX[(c >>> 8) & 0x0f])
+                    .append(HEX[(c >>> 4) & 0x0f]).append(HEX[c & 0x0f]);
+            }
+            start = i + 1;
+            i = next(string, start);
+        }
+        append(string, start, length, out);
+    }
+
+
+    /**
+     * Produce a copy of a string with its special characters escaped.
+     * @param string A String.
+     * @return The escaped string, which is the string itself if nothing
+     *  needed escaping.
+     */
+    String escape(String string) {
+        if (next(string, 0) == string.length()) {
+            return string;
+        }
+        StringBuilder sb = new StringBuilder(string.length() + 16);
+        try {
+            escape(string, sb);
+        } catch (IOException ignored) {
+// A StringBuilder does not fail.
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Append part of a string, without making a substring when the
+     * Appendable is a Writer.
+     */
+    private static void append(String string, int start, int end,
+            Appendable out) throws IOException {
+        if (start == end) {
+            return;
+        }
+        if (out instanceof Writer) {
+            ((Writer)out).write(string, start, end - start);
+        } else {
+            out.append(string, start, end);
+        }
+    }
+}
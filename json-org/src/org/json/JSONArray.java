@@ -25,12 +25,17 @@ SOFTWARE.
 */
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * A JSONArray is an ordered sequence of values. Its external text form is a
@@ -103,12 +108,70 @@ public class JSONArray {
      * @param x A JSONTokener
      * @throws JSONException If there is a syntax error.
      */
-    @SuppressWarnings("unchecked")
 	public JSONArray(JSONTokener x) throws JSONException {
+        this(x, false);
+    }
+
+
+    /**
+     * Construct a JSONArray from a JSONTokener, optionally in lazy mode.
+     * In lazy mode the syntax of each element is checked, but elements are
+     * only built from the source text when they are first read. See
+     * {@link JSONObject#JSONObject(JSONTokener, boolean)}.
+     * @param x A JSONTokener
+     * @param lazy Build elements on first access rather than now.
+     * @throws JSONException If there is a syntax error.
+     */
+    @SuppressWarnings("unchecked")
+	public JSONArray(JSONTokener x, boolean lazy) throws JSONException {
+        this();
+        if (x.nextClean() != '[') {
+            throw x.syntaxError("A JSONArray text must start with '['");
+        }
+        parseElements(x, lazy);
+    }
+
+
+    /**
+     * Construct a JSONArray from a JSONTokener, parsing the elements of a
+     * large array in parallel. The array's text is scanned once to find
+     * where each element starts and ends, the elements are parsed in
+     * batches on the executor, and they are put in the JSONArray in order.
+     * Arrays nested in the elements are parsed on the executor's threads
+     * in the usual way, so tasks never wait on other tasks.
+     * <p>
+     * This only applies to tokeners made from a String. Small arrays, and
+     * arrays with a syntax error (so that the error is reported just as it
+     * would otherwise be), are parsed on the calling thread.
+     * @param x A JSONTokener
+     * @param executor The executor to parse elements on.
+     * @throws JSONException If there is a syntax error.
+     */
+    public JSONArray(JSONTokener x, ExecutorService executor)
+            throws JSONException {
         this();
         if (x.nextClean() != '[') {
             throw x.syntaxError("A JSONArray text must start with '['");
         }
+        if (!parseInParallel(x, executor)) {
+// Arrays nested in this one are not worth scanning again.
+            ExecutorService outer = x.getExecutor();
+            x.setExecutor(null);
+            try {
+                parseElements(x, false);
+            } finally {
+                x.setExecutor(outer);
+            }
+        }
+    }
+
+
+    /**
+     * Parse the elements of an array whose '[' has been read.
+     */
+    @SuppressWarnings("unchecked")
+    private void parseElements(JSONTokener x, boolean lazy)
+            throws JSONException {
         if (x.nextClean() != ']') {
 	        x.back();
 	        for (;;) {
@@ -117,7 +180,7 @@ public class JSONArray {
 	                this.myArrayList.add(JSONObject.NULL);
 	            } else {
 	                x.back();
-	                this.myArrayList.add(x.nextValue());
+	                this.myArrayList.add(lazy ? x.nextLazyValue() : x.nextValue());
 	            }
 	            switch (x.nextClean()) {
 	            case ';':
@@ -137,6 +200,92 @@ public class JSONArray {
     }
 
 
+    /**
+     * Arrays with less text than this are not worth parsing in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 65536;
+
+    /**
+     * Number of batches of elements to hand to the executor per processor.
+     */
+    private static final int BATCHES_PER_PROCESSOR = 4;
+
+    /**
+     * Try to parse the elements of an array whose '[' has been read in
+     * parallel.
+     * @return false, having consumed nothing, if the elements should be
+     *  parsed in the usual way instead.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private boolean parseInParallel(JSONTokener x, ExecutorService executor)
+            throws JSONException {
+        final int ranges[] = x.scanArray();
+        if (ranges == null || ranges[0] - x.getWindowPosition() <
+                PARALLEL_THRESHOLD) {
+            return false;
+        }
+        int count = (ranges.length - 1) / 2;
+        int batches = Math.min(count, BATCHES_PER_PROCESSOR *
+                Runtime.getRuntime().availableProcessors());
+        final Object values[] = new Object[count];
+        Future futures[] = new Future[batches];
+        for (int b = 0; b < batches; b += 1) {
+            final JSONTokener parent = x;
+            final int from = (int) ((long) count * b / batches);
+            final int to = (int) ((long) count * (b + 1) / batches);
+            futures[b] = executor.submit(new Callable() {
+                public Object call() throws JSONException {
+                    for (int i = from; i < to; i += 1) {
+                        values[i] = parseElement(parent, ranges[1 + i * 2],
+                                ranges[2 + i * 2]);
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (int b = 0; b < batches; b += 1) {
+                futures[b].get();
+            }
+        } catch (ExecutionException e) {
+            for (int b = 0; b < batches; b += 1) {
+                futures[b].cancel(false);
+            }
+            return false;
+        } catch (InterruptedException e) {
+            for (int b = 0; b < batches; b += 1) {
+                futures[b].cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new JSONException(e);
+        }
+        this.myArrayList.ensureCapacity(count);
+        for (int i = 0; i < count; i += 1) {
+            this.myArrayList.add(values[i]);
+        }
+        x.advanceTo(ranges[0]);
+        return true;
+    }
+
+
+    /**
+     * Parse one element found by scanArray, or return NULL for an elided
+     * element.
+     */
+    private static Object parseElement(JSONTokener parent, int start,
+            int end) throws JSONException {
+        if (start < 0) {
+            return JSONObject.NULL;
+        }
+        JSONTokener x = parent.subTokener(start, end);
+        Object value = x.nextValue();
+        if (x.nextClean() != 0) {
+            throw x.syntaxError("Expected a ',' or ']'");
+        }
+        return value;
+    }
+
+
     /**
      * Construct a JSONArray from a source JSON text.
      * @param source     A string that begins with
@@ -149,6 +298,20 @@ public class JSONArray {
     }
 
 
+    /**
+     * Construct a JSONArray from a source JSON text, optionally in lazy
+     * mode. See {@link #JSONArray(JSONTokener, boolean)}.
+     * @param source     A string that begins with
+     * <code>[</code>&nbsp;<small>(left bracket)</small>
+     *  and ends with <code>]</code>&nbsp;<small>(right bracket)</small>.
+     * @param lazy Build elements on first access rather than now.
+     *  @throws JSONException If there is a syntax error.
+     */
+    public JSONArray(String source, boolean lazy) throws JSONException {
+        this(new JSONTokener(source), lazy);
+    }
+
+
     /**
      * Construct a JSONArray from a Collection.
      * @param collection     A Collection.
@@ -191,7 +354,8 @@ public class JSONArray {
      * @throws JSONException If there is no value for the index.
      */
     public Object get(int index) throws JSONException {
-        Object object = opt(index);
+        Object object = (index < 0 || index >= length()) ?
+            null : value(index);
         if (object == null) {
             throw new JSONException("JSONArray[" + index + "] not found.");
         }
@@ -357,7 +521,7 @@ public class JSONArray {
             if (i > 0) {
                 sb.append(separator);
             }
-            sb.append(JSONObject.valueToString(this.myArrayList.get(i)));
+            sb.append(JSONObject.valueToString(value(i)));
         }
         return sb.toString();
     }
@@ -380,8 +544,27 @@ public class JSONArray {
      *              object at that index.
      */
     public Object opt(int index) {
-        return (index < 0 || index >= length()) ?
-            null : this.myArrayList.get(index);
+        try {
+            return (index < 0 || index >= length()) ?
+                null : value(index);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Get the element at an index, building it first if it was left
+     * unread by a lazy parse.
+     */
+    @SuppressWarnings("unchecked")
+	private Object value(int index) throws JSONException {
+        Object object = this.myArrayList.get(index);
+        if (object instanceof JSONLazyValue) {
+            object = ((JSONLazyValue)object).materialize();
+            this.myArrayList.set(index, object);
+        }
+        return object;
     }
 
 
@@ -439,6 +622,13 @@ public class JSONArray {
      * @return      The value.
      */
     public double optDouble(int index, double defaultValue) {
+        Object object = opt(index);
+        if (object instanceof Number) {
+            return ((Number)object).doubleValue();
+        }
+        if (object == null) {
+            return defaultValue;
+        }
         try {
             return getDouble(index);
         } catch (Exception e) {
@@ -469,6 +659,13 @@ public class JSONArray {
      * @return      The value.
      */
     public int optInt(int index, int defaultValue) {
+        Object object = opt(index);
+        if (object instanceof Number) {
+            return ((Number)object).intValue();
+        }
+        if (object == null) {
+            return defaultValue;
+        }
         try {
             return getInt(index);
         } catch (Exception e) {
@@ -525,6 +722,13 @@ public class JSONArray {
      * @return      The value.
      */
     public long optLong(int index, long defaultValue) {
+        Object object = opt(index);
+        if (object instanceof Number) {
+            return ((Number)object).longValue();
+        }
+        if (object == null) {
+            return defaultValue;
+        }
         try {
             return getLong(index);
         } catch (Exception e) {
@@ -593,7 +797,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(double value) throws JSONException {
-        Double d = new Double(value);
+        Double d = Double.valueOf(value);
         JSONObject.testValidity(d);
         put(d);
         return this;
@@ -607,7 +811,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(int value) {
-        put(new Integer(value));
+        put(Integer.valueOf(value));
         return this;
     }
 
@@ -619,7 +823,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(long value) {
-        put(new Long(value));
+        put(Long.valueOf(value));
         return this;
     }
 
@@ -693,7 +897,7 @@ public class JSONArray {
      * not finite.
      */
     public JSONArray put(int index, double value) throws JSONException {
-        put(index, new Double(value));
+        put(index, Double.valueOf(value));
         return this;
     }
 
@@ -708,7 +912,7 @@ public class JSONArray {
      * @throws JSONException If the index is negative.
      */
     public JSONArray put(int index, int value) throws JSONException {
-        put(index, new Integer(value));
+        put(index, Integer.valueOf(value));
         return this;
     }
 
@@ -723,7 +927,7 @@ public class JSONArray {
      * @throws JSONException If the index is negative.
      */
     public JSONArray put(int index, long value) throws JSONException {
-        put(index, new Long(value));
+        put(index, Long.valueOf(value));
         return this;
     }
 
@@ -821,7 +1025,10 @@ public class JSONArray {
      */
     public String toString() {
         try {
-            return '[' + join(",") + ']';
+            StringWriter w = new StringWriter();
+            synchronized (w.getBuffer()) {
+                return this.write(w, -1, 0, false).toString();
+            }
         } catch (Exception e) {
             return null;
         }
@@ -855,35 +1062,14 @@ public class JSONArray {
      * @throws JSONException
      */
     String toString(int indentFactor, int indent) throws JSONException {
-        int len = length();
-        if (len == 0) {
-            return "[]";
-        }
-        int i;
-        StringBuffer sb = new StringBuffer("[");
-        if (len == 1) {
-            sb.append(JSONObject.valueToString(this.myArrayList.get(0),
-                    indentFactor, indent));
-        } else {
-            int newindent = indent + indentFactor;
-            sb.append('\n');
-            for (i = 0; i < len; i += 1) {
-                if (i > 0) {
-                    sb.append(",\n");
-                }
-                for (int j = 0; j < newindent; j += 1) {
-                    sb.append(' ');
-                }
-                sb.append(JSONObject.valueToString(this.myArrayList.get(i),
-                        indentFactor, newindent));
-            }
-            sb.append('\n');
-            for (i = 0; i < indent; i += 1) {
-                sb.append(' ');
+        StringWriter w = new StringWriter();
+        synchronized (w.getBuffer()) {
+            try {
+                return this.write(w, indentFactor, indent, true).toString();
+            } catch (IOException exception) {
+                throw new JSONException(exception);
             }
         }
-        sb.append(']');
-        return sb.toString();
     }
 
 
@@ -897,30 +1083,83 @@ public class JSONArray {
      * @throws JSONException
      */
     public Writer write(Writer writer) throws JSONException {
+        return this.write(writer, -1, false);
+    }
+
+
+    /**
+     * Write a prettyprinted JSON text of this JSONArray to a writer, as
+     * {@link #toString(int)} would produce it but without building the
+     * text in memory first. Wrap an OutputStream in a {@link UTF8Writer}
+     * to write straight to it.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     * @param writer The writer.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation.
+     * @return The writer.
+     * @throws JSONException
+     */
+    public Writer write(Writer writer, int indentFactor) throws JSONException {
+        return this.write(writer, indentFactor, true);
+    }
+
+
+    /**
+     * Write the contents of the JSONArray as JSON text to a writer.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     * @param writer The writer.
+     * @param indentFactor The number of spaces to add to each level of
+     *  indentation, or -1 for compact text with no whitespace.
+     * @param sortKeys Write the keys of each object in sorted order.
+     * @return The writer.
+     * @throws JSONException
+     */
+    public Writer write(Writer writer, int indentFactor, boolean sortKeys)
+            throws JSONException {
         try {
-            boolean b = false;
-            int     len = length();
+            return this.write(writer, indentFactor, 0, sortKeys);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
 
-            writer.write('[');
 
+    /**
+     * Write the contents of the JSONArray as JSON text to a writer,
+     * starting at the given indentation.
+     */
+    Writer write(Writer writer, int indentFactor, int indent,
+            boolean sortKeys) throws JSONException, IOException {
+        int len = length();
+        writer.write('[');
+        if (indentFactor < 0) {
             for (int i = 0; i < len; i += 1) {
-                if (b) {
+                if (i > 0) {
                     writer.write(',');
                 }
-                Object v = this.myArrayList.get(i);
-                if (v instanceof JSONObject) {
-                    ((JSONObject)v).write(writer);
-                } else if (v instanceof JSONArray) {
-                    ((JSONArray)v).write(writer);
-                } else {
-                    writer.write(JSONObject.valueToString(v));
+                JSONObject.writeValue(writer, value(i),
+                        indentFactor, 0, sortKeys);
+            }
+        } else if (len == 1) {
+            JSONObject.writeValue(writer, value(0),
+                    indentFactor, indent, sortKeys);
+        } else if (len > 1) {
+            int newindent = indent + indentFactor;
+            writer.write('\n');
+            for (int i = 0; i < len; i += 1) {
+                if (i > 0) {
+                    writer.write(",\n");
                 }
-                b = true;
+                JSONObject.indent(writer, newindent);
+                JSONObject.writeValue(writer, value(i),
+                        indentFactor, newindent, sortKeys);
             }
-            writer.write(']');
-            return writer;
-        } catch (IOException e) {
-           throw new JSONException(e);
+            writer.write('\n');
+            JSONObject.indent(writer, indent);
         }
+        writer.write(']');
+        return writer;
     }
-}
\ No newline at end of file
+}
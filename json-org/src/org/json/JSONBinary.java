@@ -0,0 +1,595 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JSONBinary encodes JSONObjects, JSONArrays and the other JSON values in
+ * a compact binary form, and decodes them again, straight to and from
+ * streams. The binary form is smaller than JSON text and much cheaper to
+ * decode, because nothing has to be scanned for quotes, escapes or
+ * delimiters: every string and container says how long it is up front.
+ * It is meant for caching and shipping values between programs that both
+ * use this package, not for interchange.
+ * <p>
+ * An encoded value starts with the three bytes <code>'J' 'B' 1</code>,
+ * followed by the value. Each value is a type byte followed by its data:
+ * <ul>
+ * <li><code>0</code> null, <code>1</code> false, <code>2</code> true;</li>
+ * <li><code>3</code> an integer, as a zigzag varint;</li>
+ * <li><code>4</code> a double, as 8 bytes of IEEE 754, high byte first;</li>
+ * <li><code>5</code> a string, as a varint byte length and the UTF-8 bytes
+ *  (characters outside the BMP are written as their two surrogates);</li>
+ * <li><code>6</code> an object, as a varint member count and, for each
+ *  member, a key and a value;</li>
+ * <li><code>7</code> an array, as a varint element count and the values;</li>
+ * <li><code>8</code> another kind of number, as a string of its JSON
+ *  text, which is read back with JSONObject.stringToValue just as it
+ *  would be parsed.</li>
+ * </ul>
+ * Keys are kept in a dictionary shared by the whole value. A key is a
+ * varint n: if n is odd, it is a reference to dictionary entry n / 2;
+ * otherwise n / 2 bytes of UTF-8 follow, and the first 4096 distinct keys
+ * written are added to the dictionary in order. A varint is an unsigned
+ * number written 7 bits at a time, low bits first, with the high bit of
+ * each byte set if more bytes follow.
+ * <p>
+ * Values are converted as they would be for JSON text: a Map is written as
+ * an object, a Collection or array as an array, a JSONString as the value
+ * its text stands for, and any other object as the string from its
+ * toString method. Integer and Long values are read back as Integer when
+ * they fit in an int, and as Long otherwise, as they would be parsed.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+public class JSONBinary {
+
+    /*
+     * Type bytes.
+     */
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INTEGER = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int OBJECT = 6;
+    private static final int ARRAY = 7;
+    private static final int NUMBER = 8;
+
+    /**
+     * The version written after the magic bytes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The most keys the dictionary will hold.
+     */
+    private static final int KEY_LIMIT = 4096;
+
+    /**
+     * The stream written to, or null when reading.
+     */
+    private final OutputStream out;
+
+    /**
+     * The stream read from, or null when writing or reading a byte array.
+     */
+    private final InputStream in;
+
+    /**
+     * Bytes waiting to be written, or read but not yet used.
+     */
+    private byte buffer[];
+
+    /**
+     * The position of the next byte in the buffer.
+     */
+    private int position;
+
+    /**
+     * The end of the bytes read into the buffer.
+     */
+    private int limit;
+
+    /**
+     * The dictionary of keys, by index when writing.
+     */
+    @SuppressWarnings("rawtypes")
+    private HashMap keyIndex;
+
+    /**
+     * The dictionary of keys when reading.
+     */
+    private String keys[];
+
+    /**
+     * The number of keys in the dictionary.
+     */
+    private int keyCount;
+
+    /**
+     * Holds the characters of a string while it is decoded.
+     */
+    private char chars[];
+
+
+    @SuppressWarnings("rawtypes")
+    private JSONBinary(OutputStream out) {
+        this.out = out;
+        this.in = null;
+        this.buffer = new byte[8192];
+        this.keyIndex = new HashMap();
+    }
+
+
+    private JSONBinary(InputStream in, byte buffer[], int limit) {
+        this.out = null;
+        this.in = in;
+        this.buffer = buffer;
+        this.limit = limit;
+        this.keys = new String[64];
+        this.chars = new char[64];
+    }
+
+
+    /**
+     * Write the binary form of a value to a stream.
+     * @param value A JSONObject, JSONArray, String, Number, Boolean,
+     *  JSONObject.NULL, or other value that could be put in a JSONObject.
+     * @param out The stream to write to. It is not flushed or closed.
+     * @throws JSONException If the value is or contains an invalid number,
+     *  or the stream could not be written.
+     */
+    public static void write(Object value, OutputStream out)
+            throws JSONException {
+        JSONBinary writer = new JSONBinary(out);
+        try {
+            writer.writeByte('J');
+            writer.writeByte('B');
+            writer.writeByte(VERSION);
+            writer.writeValue(value);
+            writer.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Produce the binary form of a value.
+     * @param value A JSONObject, JSONArray, String, Number, Boolean,
+     *  JSONObject.NULL, or other value that could be put in a JSONObject.
+     * @return The bytes of the binary form.
+     * @throws JSONException If the value is or contains an invalid number.
+     */
+    public static byte[] toByteArray(Object value) throws JSONException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(value, out);
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Read a value written by write from a stream. The stream is read in
+     * blocks, so it may be read past the end of the value.
+     * @param in The stream to read from. It is not closed.
+     * @return A JSONObject, JSONArray, String, Integer, Long, Double,
+     *  Boolean, or JSONObject.NULL.
+     * @throws JSONException If the bytes are not a binary JSON value, or the
+     *  stream could not be read.
+     */
+    public static Object read(InputStream in) throws JSONException {
+        return new JSONBinary(in, new byte[8192], 0).read();
+    }
+
+
+    /**
+     * Read a value from its binary form.
+     * @param bytes The bytes of the binary form.
+     * @return A JSONObject, JSONArray, String, Integer, Long, Double,
+     *  Boolean, or JSONObject.NULL.
+     * @throws JSONException If the bytes are not a binary JSON value.
+     */
+    public static Object read(byte bytes[]) throws JSONException {
+        return new JSONBinary(null, bytes, bytes.length).read();
+    }
+
+
+    private Object read() throws JSONException {
+        try {
+            if (readByte() != 'J' || readByte() != 'B' ||
+                    readByte() != VERSION) {
+                throw new JSONException("Not a binary JSON value.");
+            }
+            return readValue();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+// Writing
+
+
+    @SuppressWarnings("rawtypes")
+    private void writeValue(Object value) throws JSONException, IOException {
+        if (value == null || value.equals(null)) {
+            writeByte(NULL);
+        } else if (value instanceof String) {
+            writeByte(STRING);
+            writeString((String)value, 0);
+        } else if (value instanceof JSONObject) {
+            writeObject((JSONObject)value);
+        } else if (value instanceof JSONArray) {
+            writeArray((JSONArray)value);
+        } else if (value instanceof Boolean) {
+            writeByte(((Boolean)value).booleanValue() ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Long ||
+                value instanceof Short || value instanceof Byte) {
+            long l = ((Number)value).longValue();
+            writeByte(INTEGER);
+            writeVarLong((l << 1) ^ (l >> 63));
+        } else if (value instanceof Double) {
+            JSONObject.testValidity(value);
+            long bits = Double.doubleToLongBits(((Double)value).doubleValue());
+            writeByte(DOUBLE);
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                this.buffer[this.position++] = (byte)(bits >>> shift);
+            }
+        } else if (value instanceof Number) {
+            writeByte(NUMBER);
+            writeString(JSONObject.numberToString((Number)value), 0);
+        } else if (value instanceof JSONString) {
+            Object o;
+            try {
+                o = ((JSONString)value).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException(e);
+            }
+            if (!(o instanceof String)) {
+                throw new JSONException("Bad value from toJSONString: " + o);
+            }
+            writeValue(new JSONTokener((String)o).nextValue());
+        } else if (value instanceof Map) {
+            writeObject(new JSONObject((Map)value));
+        } else if (value instanceof Collection) {
+            writeArray(new JSONArray((Collection)value));
+        } else if (value.getClass().isArray()) {
+            writeArray(new JSONArray(value));
+        } else {
+            writeByte(STRING);
+            writeString(value.toString(), 0);
+        }
+    }
+
+
+    @SuppressWarnings("rawtypes")
+    private void writeObject(JSONObject jo) throws JSONException, IOException {
+        writeByte(OBJECT);
+        writeVarLong(jo.length());
+        Iterator keys = jo.keys();
+        while (keys.hasNext()) {
+            String key = keys.next().toString();
+            writeKey(key);
+            writeValue(jo.opt(key));
+        }
+    }
+
+
+    private void writeArray(JSONArray ja) throws JSONException, IOException {
+        int length = ja.length();
+        writeByte(ARRAY);
+        writeVarLong(length);
+        for (int i = 0; i < length; i += 1) {
+            writeValue(ja.opt(i));
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private void writeKey(String key) throws IOException {
+        Integer index = (Integer)this.keyIndex.get(key);
+        if (index != null) {
+            writeVarLong((index.intValue() << 1) | 1);
+            return;
+        }
+        if (this.keyCount < KEY_LIMIT) {
+            this.keyIndex.put(key, Integer.valueOf(this.keyCount));
+            this.keyCount += 1;
+        }
+        writeString(key, 1);
+    }
+
+
+    /**
+     * Write a string as its UTF-8 length, shifted left, and its UTF-8 bytes.
+     */
+    private void writeString(String string, int shift) throws IOException {
+        int length = string.length();
+        int utf8Length = length;
+        int i;
+        for (i = 0; i < length; i += 1) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                utf8Length += c < 0x800 ? 1 : 2;
+            }
+        }
+        writeVarLong((long)utf8Length << shift);
+        byte buffer[] = this.buffer;
+        int position = this.position;
+        for (i = 0; i < length; i += 1) {
+            if (position + 3 > buffer.length) {
+                this.position = position;
+                flush();
+                position = 0;
+            }
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte)c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte)(0xC0 | (c >> 6));
+                buffer[position++] = (byte)(0x80 | (c & 0x3F));
+            } else {
+                buffer[position++] = (byte)(0xE0 | (c >> 12));
+                buffer[position++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        this.position = position;
+    }
+
+
+    private void writeVarLong(long l) throws IOException {
+        ensure(10);
+        while ((l & ~0x7FL) != 0) {
+            this.buffer[this.position++] = (byte)((l & 0x7F) | 0x80);
+            l >>>= 7;
+        }
+        this.buffer[this.position++] = (byte)l;
+    }
+
+
+    private void writeByte(int b) throws IOException {
+        ensure(1);
+        this.buffer[this.position++] = (byte)b;
+    }
+
+
+    /**
+     * Make room for n more bytes in the buffer.
+     */
+    private void ensure(int n) throws IOException {
+        if (this.position + n > this.buffer.length) {
+            flush();
+        }
+    }
+
+
+    private void flush() throws IOException {
+        this.out.write(this.buffer, 0, this.position);
+        this.position = 0;
+    }
+
+
+// Reading
+
+
+    private Object readValue() throws JSONException, IOException {
+        int type = readByte();
+        int length;
+        switch (type) {
+        case NULL:
+            return JSONObject.NULL;
+        case FALSE:
+            return Boolean.FALSE;
+        case TRUE:
+            return Boolean.TRUE;
+        case INTEGER:
+            long l = readVarLong();
+            l = (l >>> 1) ^ -(l & 1);
+            if (l == (int)l) {
+                return Integer.valueOf((int)l);
+            }
+            return Long.valueOf(l);
+        case DOUBLE:
+            fill(8);
+            long bits = 0;
+            for (int i = 0; i < 8; i += 1) {
+                bits = (bits << 8) | (this.buffer[this.position++] & 0xFF);
+            }
+            return Double.valueOf(Double.longBitsToDouble(bits));
+        case STRING:
+            return readString(readLength());
+        case OBJECT:
+            length = readLength();
+            JSONObject jo = new JSONObject();
+            for (int i = 0; i < length; i += 1) {
+                String key = readKey();
+                jo.put(key, readValue());
+            }
+            return jo;
+        case ARRAY:
+            length = readLength();
+            JSONArray ja = new JSONArray();
+            for (int i = 0; i < length; i += 1) {
+                ja.put(readValue());
+            }
+            return ja;
+        case NUMBER:
+            return JSONObject.stringToValue(readString(readLength()));
+        default:
+            throw new JSONException("Bad binary JSON type " + type + ".");
+        }
+    }
+
+
+    private String readKey() throws JSONException, IOException {
+        int n = readLength();
+        if ((n & 1) != 0) {
+            n >>>= 1;
+            if (n >= this.keyCount) {
+                throw new JSONException("Bad binary JSON key " + n + ".");
+            }
+            return this.keys[n];
+        }
+        String key = readString(n >>> 1);
+        if (this.keyCount < KEY_LIMIT) {
+            if (this.keyCount == this.keys.length) {
+                String more[] = new String[this.keyCount * 2];
+                System.arraycopy(this.keys, 0, more, 0, this.keyCount);
+                this.keys = more;
+            }
+            this.keys[this.keyCount] = key;
+            this.keyCount += 1;
+        }
+        return key;
+    }
+
+
+    /**
+     * Read a string of a number of UTF-8 bytes. The length comes from the
+     * input, so nothing is allocated for it up front: a stream is decoded a
+     * buffer at a time, and a byte array must hold all of the bytes.
+     */
+    private String readString(int length) throws JSONException, IOException {
+        if (this.in == null && length > this.limit - this.position) {
+            throw new JSONException("Binary JSON value is cut short.");
+        }
+        int n = 0;
+        while (length > 0) {
+            int piece = Math.min(length, this.buffer.length);
+            boolean last = piece == length;
+            fill(piece);
+            if (n + piece > this.chars.length) {
+                char more[] = new char[Math.max(n + piece,
+                        this.chars.length * 2)];
+                System.arraycopy(this.chars, 0, more, 0, n);
+                this.chars = more;
+            }
+            byte buffer[] = this.buffer;
+            char chars[] = this.chars;
+            int i = this.position;
+            int end = i + piece;
+            while (i < end) {
+                int b = buffer[i];
+                if (b >= 0) {
+                    chars[n++] = (char)b;
+                    i += 1;
+                } else if ((b & 0xE0) == 0xC0 && i + 1 < end) {
+                    chars[n++] = (char)(((b & 0x1F) << 6) |
+                            (buffer[i + 1] & 0x3F));
+                    i += 2;
+                } else if ((b & 0xF0) == 0xE0 && i + 2 < end) {
+                    chars[n++] = (char)(((b & 0x0F) << 12) |
+                            ((buffer[i + 1] & 0x3F) << 6) |
+                            (buffer[i + 2] & 0x3F));
+                    i += 3;
+                } else if (!last && end - i < 3 &&
+                        ((b & 0xE0) == 0xC0 || (b & 0xF0) == 0xE0)) {
+
+// The character continues past the end of the buffer. Leave its first bytes
+// to be moved down by the next fill.
+
+                    break;
+                } else {
+                    throw new JSONException("Bad binary JSON string.");
+                }
+            }
+            length -= i - this.position;
+            this.position = i;
+        }
+        return new String(this.chars, 0, n);
+    }
+
+
+    /**
+     * Read a varint that must fit in a non-negative int.
+     */
+    private int readLength() throws JSONException, IOException {
+        long l = readVarLong();
+        if (l < 0 || l > Integer.MAX_VALUE) {
+            throw new JSONException("Bad binary JSON length " + l + ".");
+        }
+        return (int)l;
+    }
+
+
+    private long readVarLong() throws JSONException, IOException {
+        long l = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            l |= (long)(b & 0x7F) << shift;
+            if (b < 0x80) {
+                return l;
+            }
+        }
+        throw new JSONException("Bad binary JSON varint.");
+    }
+
+
+    private int readByte() throws JSONException, IOException {
+        if (this.position == this.limit) {
+            fill(1);
+        }
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+
+    /**
+     * Make sure that n bytes are ready in the buffer, which must be large
+     * enough to hold them.
+     */
+    private void fill(int n) throws JSONException, IOException {
+        if (this.limit - this.position >= n) {
+            return;
+        }
+        if (this.in == null) {
+            throw new JSONException("Binary JSON value is cut short.");
+        }
+        System.arraycopy(this.buffer, this.position, this.buffer, 0,
+                this.limit - this.position);
+        this.limit -= this.position;
+        this.position = 0;
+        while (this.limit < n) {
+            int count = this.in.read(this.buffer, this.limit,
+                    this.buffer.length - this.limit);
+            if (count < 0) {
+                throw new JSONException("Binary JSON value is cut short.");
+            }
+            this.limit += count;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONLazyValue stands in for a value that a lazy JSONObject or JSONArray
+ * has not built yet. It marks where the value lies in the source text, and
+ * is replaced by the real value the first time that value is read. It is
+ * never handed out by the public methods.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+final class JSONLazyValue {
+
+    private final char buffer[];
+    private final int  start;
+    private final int  end;
+
+
+    /**
+     * Construct a JSONLazyValue.
+     * @param buffer The source text.
+     * @param start  The index of the first character of the value.
+     * @param end    The index after the last character of the value.
+     */
+    JSONLazyValue(char buffer[], int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+
+    /**
+     * Build the value. Objects and arrays are built lazily in turn, and
+     * since their text was checked when this value was skipped, the ends
+     * of their own values are found by a plain scan.
+     * @return The value, as nextValue would have returned it.
+     * @throws JSONException If the value contains a duplicated key.
+     */
+    Object materialize() throws JSONException {
+        JSONTokener x = new JSONTokener(this.buffer, this.start, this.end);
+        x.setChecked();
+        switch (this.buffer[this.start]) {
+        case '{':
+            return new JSONObject(x, true);
+        case '[':
+            return new JSONArray(x, true);
+        default:
+            return x.nextValue();
+        }
+    }
+
+
+    /**
+     * Get the source text of the value.
+     */
+    public String toString() {
+        return new String(this.buffer, this.start, this.end - this.start);
+    }
+}
@@ -0,0 +1,340 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * JSONMap is the Map behind a JSONObject. Keys and values are kept in two
+ * parallel arrays in insertion order, so iteration (and therefore the
+ * output of JSONObject.toString) follows the order the keys were put in,
+ * and no entry object is made per key. Small maps are searched by a linear
+ * scan; once a map holds more than LINEAR_LIMIT keys an open addressing
+ * index of array positions, probed linearly, is added.
+ * <p>
+ * Removing a key shifts the later keys down, so removal costs time in
+ * proportion to the size of the map.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+@SuppressWarnings("rawtypes")
+final class JSONMap extends AbstractMap {
+
+    /**
+     * Maps with no more keys than this are searched without an index.
+     */
+    private static final int LINEAR_LIMIT = 8;
+
+    private Object keys[];
+    private Object values[];
+    private int    size;
+
+    /**
+     * Array position + 1 of the key in each slot, or 0 for an empty slot.
+     * Null while the map is small enough to scan.
+     */
+    private int    index[];
+
+    private int    modCount;
+
+
+    /**
+     * Construct an empty JSONMap.
+     * @param capacity The number of keys to make room for.
+     */
+    JSONMap(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.size = 0;
+        this.index = null;
+        this.modCount = 0;
+    }
+
+
+    public int size() {
+        return this.size;
+    }
+
+
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+
+    public Object get(Object key) {
+        int i = find(key);
+        return i < 0 ? null : this.values[i];
+    }
+
+
+    public Object put(Object key, Object value) {
+        int i = find(key);
+        if (i >= 0) {
+            Object old = this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+        ensureCapacity(this.size + 1);
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.size += 1;
+        this.modCount += 1;
+        if (this.index != null) {
+            addToIndex(this.size - 1);
+        } else if (this.size > LINEAR_LIMIT) {
+            buildIndex();
+        }
+        return null;
+    }
+
+
+    public Object remove(Object key) {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        Object old = this.values[i];
+        removeAt(i);
+        return old;
+    }
+
+
+    public void clear() {
+        for (int i = 0; i < this.size; i += 1) {
+            this.keys[i] = null;
+            this.values[i] = null;
+        }
+        this.size = 0;
+        this.index = null;
+        this.modCount += 1;
+    }
+
+
+    public Set entrySet() {
+        return new EntrySet();
+    }
+
+
+    /**
+     * Make room for at least capacity keys.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= this.keys.length) {
+            return;
+        }
+        int length = Math.max(capacity, this.keys.length * 2);
+        Object newKeys[] = new Object[length];
+        Object newValues[] = new Object[length];
+        System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+        System.arraycopy(this.values, 0, newValues, 0, this.size);
+        this.keys = newKeys;
+        this.values = newValues;
+        if (this.index != null) {
+            buildIndex();
+        }
+    }
+
+
+    /**
+     * Get the array position of a key, or -1 if it is not in the map.
+     */
+    private int find(Object key) {
+        Object keys[] = this.keys;
+        if (this.index == null) {
+            for (int i = 0; i < this.size; i += 1) {
+                if (key == null ? keys[i] == null :
+                        key == keys[i] || key.equals(keys[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int index[] = this.index;
+        int mask = index.length - 1;
+        int slot = hash(key) & mask;
+        int position;
+        while ((position = index[slot]) != 0) {
+            Object k = keys[position - 1];
+            if (key == null ? k == null : key == k || key.equals(k)) {
+                return position - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+
+    /**
+     * Build the index with room for the whole keys array at no more than
+     * half full.
+     */
+    private void buildIndex() {
+        int length = 16;
+        while (length < this.keys.length * 2) {
+            length *= 2;
+        }
+        this.index = new int[length];
+        for (int i = 0; i < this.size; i += 1) {
+            addToIndex(i);
+        }
+    }
+
+
+    private void addToIndex(int position) {
+        int index[] = this.index;
+        int mask = index.length - 1;
+        int slot = hash(this.keys[position]) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = position + 1;
+    }
+
+
+    private void removeAt(int i) {
+        int moved = this.size - i - 1;
+        if (moved > 0) {
+            System.arraycopy(this.keys, i + 1, this.keys, i, moved);
+            System.arraycopy(this.values, i + 1, this.values, i, moved);
+        }
+        this.size -= 1;
+        this.keys[this.size] = null;
+        this.values[this.size] = null;
+        this.modCount += 1;
+        if (this.index != null) {
+            if (this.size > LINEAR_LIMIT) {
+                buildIndex();
+            } else {
+                this.index = null;
+            }
+        }
+    }
+
+
+    private final class EntrySet extends AbstractSet {
+
+        public Iterator iterator() {
+            return new EntryIterator();
+        }
+
+        public int size() {
+            return JSONMap.this.size;
+        }
+    }
+
+
+    private final class EntryIterator implements Iterator {
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = JSONMap.this.modCount;
+
+        public boolean hasNext() {
+            return this.next < JSONMap.this.size;
+        }
+
+        public Object next() {
+            if (JSONMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (this.next >= JSONMap.this.size) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            this.next += 1;
+            return new Entry(this.last);
+        }
+
+        public void remove() {
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            if (JSONMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expectedModCount = JSONMap.this.modCount;
+        }
+    }
+
+
+    private final class Entry implements Map.Entry {
+        private final int position;
+
+        Entry(int position) {
+            this.position = position;
+        }
+
+        public Object getKey() {
+            return JSONMap.this.keys[this.position];
+        }
+
+        public Object getValue() {
+            return JSONMap.this.values[this.position];
+        }
+
+        public Object setValue(Object value) {
+            Object old = JSONMap.this.values[this.position];
+            JSONMap.this.values[this.position] = value;
+            return old;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry e = (Map.Entry) o;
+            Object k = getKey();
+            Object v = getValue();
+            return (k == null ? e.getKey() == null : k.equals(e.getKey())) &&
+                (v == null ? e.getValue() == null : v.equals(e.getValue()));
+        }
+
+        public int hashCode() {
+            Object k = getKey();
+            Object v = getValue();
+            return (k == null ? 0 : k.hashCode()) ^
+                (v == null ? 0 : v.hashCode());
+        }
+
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
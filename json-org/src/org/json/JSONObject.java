@@ -25,18 +25,23 @@ SOFTWARE.
 */
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.TreeSet;
+import java.util.WeakHashMap;
 
 /**
  * A JSONObject is an unordered collection of name/value pairs. Its
@@ -128,10 +133,103 @@ public class JSONObject {
 
 
     /**
-     * The map where the JSONObject's properties are kept.
+     * The getters of a bean class, found once by populateMap and then
+     * reused for every bean of that class.
      */
-    @SuppressWarnings("rawtypes")
-	private Map map;
+     private static final class Accessors {
+
+        final String[] keys;
+
+        final Method[] getters;
+
+        @SuppressWarnings({"rawtypes","unchecked"})
+        Accessors(Class klass) {
+// If klass is a System class then set includeSuperClass to false. 
+
+            boolean includeSuperClass = klass.getClassLoader() != null;
+
+            Method[] methods = (includeSuperClass) ?
+                    klass.getMethods() : klass.getDeclaredMethods();
+            ArrayList keyList = new ArrayList();
+            ArrayList getterList = new ArrayList();
+            for (int i = 0; i < methods.length; i += 1) {
+                Method method = methods[i];
+                String key = keyOf(method);
+                if (key != null) {
+                    keyList.add(key);
+                    getterList.add(method);
+                }
+            }
+            this.keys = (String[]) keyList.toArray(new String[keyList.size()]);
+            this.getters = (Method[]) getterList.toArray(
+                    new Method[getterList.size()]);
+        }
+
+        /**
+         * Get the key for a getter, or null if the method is not one.
+         */
+        private static String keyOf(Method method) {
+            if (!Modifier.isPublic(method.getModifiers())) {
+                return null;
+            }
+            String name = method.getName();
+            String key = "";
+            if (name.startsWith("get")) {
+                if (name.equals("getClass") || 
+                        name.equals("getDeclaringClass")) {
+                    key = "";
+                } else {
+                    key = name.substring(3);
+                }
+            } else if (name.startsWith("is")) {
+                key = name.substring(2);
+            }
+            if (key.length() > 0 &&
+                    Character.isUpperCase(key.charAt(0)) &&
+                    method.getParameterTypes().length == 0) {
+                if (key.length() == 1) {
+                    key = key.toLowerCase();
+                } else if (!Character.isUpperCase(key.charAt(1))) {
+                    key = key.substring(0, 1).toLowerCase() +
+                        key.substring(1);
+                }
+                return key;
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * Accessors by class. Classes are held weakly and their Accessors
+     * softly, so caching a class does not keep its class loader alive.
+     */
+    @SuppressWarnings({"rawtypes","unchecked"})
+    private static final Map accessorCache =
+            Collections.synchronizedMap(new WeakHashMap());
+
+
+    /**
+     * Get the cached Accessors for a class, finding them if needed.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Accessors accessorsFor(Class klass) {
+        SoftReference reference = (SoftReference) accessorCache.get(klass);
+        Accessors accessors = reference == null ? null :
+                (Accessors) reference.get();
+        if (accessors == null) {
+            accessors = new Accessors(klass);
+            accessorCache.put(klass, new SoftReference(accessors));
+        }
+        return accessors;
+    }
+
+
+    /**
+     * The map where the JSONObject's properties are kept, in the order
+     * they were put.
+     */
+    private JSONMap map;
 
 
     /**
@@ -146,9 +244,8 @@ public class JSONObject {
     /**
      * Construct an empty JSONObject.
      */
-    @SuppressWarnings("rawtypes")
-	public JSONObject() {
-        this.map = new HashMap();
+    public JSONObject() {
+        this.map = new JSONMap(8);
     }
 
 
@@ -179,6 +276,30 @@ public class JSONObject {
      *  or a duplicated key.
      */
     public JSONObject(JSONTokener x) throws JSONException {
+        this(x, false);
+    }
+
+
+    /**
+     * Construct a JSONObject from a JSONTokener, optionally in lazy mode.
+     * In lazy mode the syntax of each value is checked, but values are
+     * only built from the source text when they are first read through
+     * get, opt or the other accessors, and nested objects and arrays are
+     * lazy in turn. This makes reading a few fields out of a large text
+     * much cheaper than a full parse. Lazy mode needs the whole source in
+     * memory, so it only applies to tokeners made from a String; values
+     * from other tokeners are built at once.
+     * <p>
+     * Unread values keep the source text alive, and reading a value
+     * updates the object, so a lazy JSONObject must not be read by several
+     * threads at once. A duplicated key inside an unread object is only
+     * reported when that object is read.
+     * @param x A JSONTokener object containing the source string.
+     * @param lazy Build values on first access rather than now.
+     * @throws JSONException If there is a syntax error in the source string
+     *  or a duplicated key.
+     */
+    public JSONObject(JSONTokener x, boolean lazy) throws JSONException {
         this();
         char c;
         String key;
@@ -195,7 +316,7 @@ public class JSONObject {
                 return;
             default:
                 x.back();
-                key = x.nextValue().toString();
+                key = x.nextKey();
             }
 
 // The key is followed by ':'. We will also tolerate '=' or '=>'.
@@ -208,7 +329,7 @@ public class JSONObject {
             } else if (c != ':') {
                 throw x.syntaxError("Expected a ':' after a key");
             }
-            putOnce(key, x.nextValue());
+            putOnce(key, lazy ? x.nextLazyValue() : x.nextValue());
 
 // Pairs are separated by ','. We will also tolerate ';'.
 
@@ -238,7 +359,7 @@ public class JSONObject {
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
 	public JSONObject(Map map) {
-        this.map = new HashMap();
+        this.map = new JSONMap(map == null ? 8 : map.size());
         if (map != null) {
             Iterator i = map.entrySet().iterator();
             while (i.hasNext()) {
@@ -316,6 +437,21 @@ public class JSONObject {
     }
 
 
+    /**
+     * Construct a JSONObject from a source JSON text string, optionally in
+     * lazy mode. See {@link #JSONObject(JSONTokener, boolean)}.
+     * @param source    A string beginning
+     *  with <code>{</code>&nbsp;<small>(left brace)</small> and ending
+     *  with <code>}</code>&nbsp;<small>(right brace)</small>.
+     * @param lazy Build values on first access rather than now.
+     * @exception JSONException If there is a syntax error in the source
+     *  string or a duplicated key.
+     */
+    public JSONObject(String source, boolean lazy) throws JSONException {
+        this(new JSONTokener(source), lazy);
+    }
+
+
     /**
      * Construct a JSONObject from a ResourceBundle.
      * @param baseName The ResourceBundle base name.
@@ -449,7 +585,7 @@ public class JSONObject {
         if (key == null) {
             throw new JSONException("Null key.");
         }
-        Object object = opt(key);
+        Object object = value(key);
         if (object == null) {
             throw new JSONException("JSONObject[" + quote(key) +
                     "] not found.");
@@ -761,7 +897,26 @@ public class JSONObject {
      * @return      An object which is the value, or null if there is no value.
      */
     public Object opt(String key) {
-        return key == null ? null : this.map.get(key);
+        try {
+            return key == null ? null : value(key);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Get the value associated with a key, building it first if it was
+     * left unread by a lazy parse.
+     */
+    @SuppressWarnings("unchecked")
+	private Object value(String key) throws JSONException {
+        Object object = this.map.get(key);
+        if (object instanceof JSONLazyValue) {
+            object = ((JSONLazyValue)object).materialize();
+            this.map.put(key, object);
+        }
+        return object;
     }
 
 
@@ -821,6 +976,13 @@ public class JSONObject {
      * @return      An object which is the value.
      */
     public double optDouble(String key, double defaultValue) {
+        Object object = opt(key);
+        if (object instanceof Number) {
+            return ((Number)object).doubleValue();
+        }
+        if (object == null) {
+            return defaultValue;
+        }
         try {
             return getDouble(key);
         } catch (Exception e) {
@@ -854,6 +1016,13 @@ public class JSONObject {
      * @return      An object which is the value.
      */
     public int optInt(String key, int defaultValue) {
+        Object object = opt(key);
+        if (object instanceof Number) {
+            return ((Number)object).intValue();
+        }
+        if (object == null) {
+            return defaultValue;
+        }
         try {
             return getInt(key);
         } catch (Exception e) {
@@ -915,6 +1084,13 @@ public class JSONObject {
      * @return             An object which is the value.
      */
     public long optLong(String key, long defaultValue) {
+        Object object = opt(key);
+        if (object instanceof Number) {
+            return ((Number)object).longValue();
+        }
+        if (object == null) {
+            return defaultValue;
+        }
         try {
             return getLong(key);
         } catch (Exception e) {
@@ -950,47 +1126,17 @@ public class JSONObject {
     }
 
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @SuppressWarnings("unchecked")
 	private void populateMap(Object bean) {
-        Class klass = bean.getClass();
-
-// If klass is a System class then set includeSuperClass to false. 
-
-        boolean includeSuperClass = klass.getClassLoader() != null;
-
-        Method[] methods = (includeSuperClass) ?
-                klass.getMethods() : klass.getDeclaredMethods();
-        for (int i = 0; i < methods.length; i += 1) {
+        Accessors accessors = accessorsFor(bean.getClass());
+        String[] keys = accessors.keys;
+        Method[] getters = accessors.getters;
+        this.map.ensureCapacity(getters.length);
+        for (int i = 0; i < getters.length; i += 1) {
             try {
-                Method method = methods[i];
-                if (Modifier.isPublic(method.getModifiers())) {
-                    String name = method.getName();
-                    String key = "";
-                    if (name.startsWith("get")) {
-                        if (name.equals("getClass") || 
-                                name.equals("getDeclaringClass")) {
-                            key = "";
-                        } else {
-                            key = name.substring(3);
-                        }
-                    } else if (name.startsWith("is")) {
-                        key = name.substring(2);
-                    }
-                    if (key.length() > 0 &&
-                            Character.isUpperCase(key.charAt(0)) &&
-                            method.getParameterTypes().length == 0) {
-                        if (key.length() == 1) {
-                            key = key.toLowerCase();
-                        } else if (!Character.isUpperCase(key.charAt(1))) {
-                            key = key.substring(0, 1).toLowerCase() +
-                                key.substring(1);
-                        }
-
-                        Object result = method.invoke(bean, (Object[])null);
-                        if (result != null) {
-                            map.put(key, wrap(result));
-                        }
-                    }
+                Object result = getters[i].invoke(bean, (Object[])null);
+                if (result != null) {
+                    this.map.put(keys[i], wrap(result));
                 }
             } catch (Exception ignore) {
             }
@@ -1036,7 +1182,7 @@ public class JSONObject {
      * @throws JSONException If the key is null or if the number is invalid.
      */
     public JSONObject put(String key, double value) throws JSONException {
-        put(key, new Double(value));
+        put(key, Double.valueOf(value));
         return this;
     }
 
@@ -1050,7 +1196,7 @@ public class JSONObject {
      * @throws JSONException If the key is null.
      */
     public JSONObject put(String key, int value) throws JSONException {
-        put(key, new Integer(value));
+        put(key, Integer.valueOf(value));
         return this;
     }
 
@@ -1064,7 +1210,7 @@ public class JSONObject {
      * @throws JSONException If the key is null.
      */
     public JSONObject put(String key, long value) throws JSONException {
-        put(key, new Long(value));
+        put(key, Long.valueOf(value));
         return this;
     }
 
@@ -1160,57 +1306,36 @@ public class JSONObject {
         if (string == null || string.length() == 0) {
             return "\"\"";
         }
+        StringBuilder sb = new StringBuilder(string.length() + 16);
+        try {
+            sb.append('"');
+            Escaper.JSON.escape(string, sb);
+            sb.append('"');
+        } catch (IOException ignored) {
+// A StringBuilder does not fail.
+        }
+        return sb.toString();
+    }
 
-        char         b;
-        char         c = 0;
-        String       hhhh;
-        int          i;
-        int          len = string.length();
-        StringBuffer sb = new StringBuffer(len + 4);
 
-        sb.append('"');
-        for (i = 0; i < len; i += 1) {
-            b = c;
-            c = string.charAt(i);
-            switch (c) {
-            case '\\':
-            case '"':
-                sb.append('\\');
-                sb.append(c);
-                break;
-            case '/':
-                if (b == '<') {
-                    sb.append('\\');
-                }
-                sb.append(c);
-                break;
-            case '\b':
-                sb.append("\\b");
-                break;
-            case '\t':
-                sb.append("\\t");
-                break;
-            case '\n':
-                sb.append("\\n");
-                break;
-            case '\f':
-                sb.append("\\f");
-                break;
-            case '\r':
-                sb.append("\\r");
-                break;
-            default:
-                if (c < ' ' || (c >= '\u0080' && c < '\u00a0') ||
-                               (c >= '\u2000' && c < '\u2100')) {
-                    hhhh = "000" + Integer.toHexString(c);
-                    sb.append("\\u" + hhhh.substring(hhhh.length() - 4));
-                } else {
-                    sb.append(c);
-                }
-            }
+    /**
+     * Write a string in double quotes with backslash sequences in all the
+     * right places, as {@link #quote(String)} does, straight to a writer.
+     * Runs of characters that need no escaping are written in one piece.
+     * @param string A String
+     * @param w The writer.
+     * @return The writer.
+     * @throws IOException
+     */
+    public static Writer quote(String string, Writer w) throws IOException {
+        if (string == null || string.length() == 0) {
+            w.write("\"\"");
+            return w;
         }
-        sb.append('"');
-        return sb.toString();
+        w.write('"');
+        Escaper.JSON.escape(string, w);
+        w.write('"');
+        return w;
     }
 
     /**
@@ -1220,7 +1345,9 @@ public class JSONObject {
      * or null if there was no value.
      */
     public Object remove(String key) {
-        return this.map.remove(key);
+        Object object = opt(key);
+        this.map.remove(key);
+        return object;
     }
 
     /**
@@ -1265,10 +1392,26 @@ public class JSONObject {
 
         char b = string.charAt(0);
         if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+') {
+
+// Plain decimal numbers are recognized by scanning, so that neither they
+// nor the many strings that merely start with a digit cost an exception.
+
+            switch (numberKind(string)) {
+            case NOT_A_NUMBER:
+                return string;
+            case INTEGER_NUMBER:
+                long value = integerValue(string);
+                if (value == (int) value) {
+                    return Integer.valueOf((int) value);
+                }
+                return Long.valueOf(value);
+            case DECIMAL_NUMBER:
+                return Double.valueOf(string);
+            }
             if (b == '0' && string.length() > 2 &&
                         (string.charAt(1) == 'x' || string.charAt(1) == 'X')) {
                 try {
-                    return new Integer(Integer.parseInt(string.substring(2), 16));
+                    return Integer.valueOf(Integer.parseInt(string.substring(2), 16));
                 } catch (Exception ignore) {
                 }
             }
@@ -1279,7 +1422,7 @@ public class JSONObject {
                 } else {
                     Long myLong = new Long(string);
                     if (myLong.longValue() == myLong.intValue()) {
-                        return new Integer(myLong.intValue());
+                        return Integer.valueOf(myLong.intValue());
                     } else {
                         return myLong;
                     }
@@ -1291,6 +1434,102 @@ public class JSONObject {
     }
 
 
+    /**
+     * Kinds of text told apart by numberKind.
+     */
+    static final int NOT_A_NUMBER = 0;
+    static final int INTEGER_NUMBER = 1;
+    static final int DECIMAL_NUMBER = 2;
+    static final int UNUSUAL_NUMBER = 3;
+
+    /**
+     * Classify a string without parsing it.
+     * <p>
+     * INTEGER_NUMBER is an optional minus sign and 1 to 18 digits, which
+     * always fits in a long. DECIMAL_NUMBER is an optional minus sign,
+     * digits with an optional fraction, and an optional exponent, with a
+     * fraction or exponent present; Double.valueOf always accepts it.
+     * UNUSUAL_NUMBER is anything containing a character that Long or
+     * Double might accept in a form not covered here (plus signs other
+     * than in exponents, hex and type suffix letters, whitespace, non-ASCII
+     * digits), or an integer too long to be sure of; such strings have to
+     * be tried the slow way. Anything else is NOT_A_NUMBER, which neither
+     * Long nor Double would accept.
+     * @param string A String.
+     * @return The kind of number.
+     */
+    static int numberKind(String string) {
+        int length = string.length();
+        char c;
+        for (int i = 0; i < length; i += 1) {
+            c = string.charAt(i);
+            if (c <= ' ' || c >= '\u0080' || "xXpPdDfF".indexOf(c) >= 0 ||
+                    (c == '+' && (i == 0 || (string.charAt(i - 1) != 'e' &&
+                    string.charAt(i - 1) != 'E')))) {
+                return UNUSUAL_NUMBER;
+            }
+        }
+        int i = 0;
+        if (i < length && string.charAt(i) == '-') {
+            i += 1;
+        }
+        int start = i;
+        while (i < length && (c = string.charAt(i)) >= '0' && c <= '9') {
+            i += 1;
+        }
+        int digits = i - start;
+        boolean decimal = false;
+        if (i < length && string.charAt(i) == '.') {
+            decimal = true;
+            i += 1;
+            start = i;
+            while (i < length && (c = string.charAt(i)) >= '0' && c <= '9') {
+                i += 1;
+            }
+            digits += i - start;
+        }
+        if (digits == 0) {
+            return NOT_A_NUMBER;
+        }
+        if (i < length && (string.charAt(i) == 'e' || string.charAt(i) == 'E')) {
+            decimal = true;
+            i += 1;
+            if (i < length && (string.charAt(i) == '-' || string.charAt(i) == '+')) {
+                i += 1;
+            }
+            start = i;
+            while (i < length && (c = string.charAt(i)) >= '0' && c <= '9') {
+                i += 1;
+            }
+            if (i == start) {
+                return NOT_A_NUMBER;
+            }
+        }
+        if (i < length) {
+            return NOT_A_NUMBER;
+        }
+        if (decimal) {
+            return DECIMAL_NUMBER;
+        }
+        return digits > 18 ? UNUSUAL_NUMBER : INTEGER_NUMBER;
+    }
+
+
+    /**
+     * Get the value of a string that numberKind found to be an
+     * INTEGER_NUMBER.
+     */
+    static long integerValue(String string) {
+        int length = string.length();
+        boolean negative = string.charAt(0) == '-';
+        long value = 0;
+        for (int i = negative ? 1 : 0; i < length; i += 1) {
+            value = value * 10 + (string.charAt(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+
     /**
      * Throw an exception if the object is a NaN or infinite number.
      * @param o The object to test.
@@ -1344,23 +1583,12 @@ public class JSONObject {
      *  with <code>{</code>&nbsp;<small>(left brace)</small> and ending
      *  with <code>}</code>&nbsp;<small>(right brace)</small>.
      */
-    @SuppressWarnings("rawtypes")
-	public String toString() {
+    public String toString() {
         try {
-            Iterator     keys = keys();
-            StringBuffer sb = new StringBuffer("{");
-
-            while (keys.hasNext()) {
-                if (sb.length() > 1) {
-                    sb.append(',');
-                }
-                Object o = keys.next();
-                sb.append(quote(o.toString()));
-                sb.append(':');
-                sb.append(valueToString(this.map.get(o)));
+            StringWriter w = new StringWriter();
+            synchronized (w.getBuffer()) {
+                return this.write(w, -1, 0, false).toString();
             }
-            sb.append('}');
-            return sb.toString();
         } catch (Exception e) {
             return null;
         }
@@ -1397,48 +1625,15 @@ public class JSONObject {
      *  with <code>}</code>&nbsp;<small>(right brace)</small>.
      * @throws JSONException If the object contains an invalid number.
      */
-    @SuppressWarnings("rawtypes")
-	String toString(int indentFactor, int indent) throws JSONException {
-        int i;
-        int length = this.length();
-        if (length == 0) {
-            return "{}";
-        }
-        Iterator     keys = sortedKeys();
-        int          newindent = indent + indentFactor;
-        Object       object;
-        StringBuffer sb = new StringBuffer("{");
-        if (length == 1) {
-            object = keys.next();
-            sb.append(quote(object.toString()));
-            sb.append(": ");
-            sb.append(valueToString(this.map.get(object), indentFactor,
-                    indent));
-        } else {
-            while (keys.hasNext()) {
-                object = keys.next();
-                if (sb.length() > 1) {
-                    sb.append(",\n");
-                } else {
-                    sb.append('\n');
-                }
-                for (i = 0; i < newindent; i += 1) {
-                    sb.append(' ');
-                }
-                sb.append(quote(object.toString()));
-                sb.append(": ");
-                sb.append(valueToString(this.map.get(object), indentFactor,
-                        newindent));
-            }
-            if (sb.length() > 1) {
-                sb.append('\n');
-                for (i = 0; i < indent; i += 1) {
-                    sb.append(' ');
-                }
+    String toString(int indentFactor, int indent) throws JSONException {
+        StringWriter w = new StringWriter();
+        synchronized (w.getBuffer()) {
+            try {
+                return this.write(w, indentFactor, indent, true).toString();
+            } catch (IOException exception) {
+                throw new JSONException(exception);
             }
         }
-        sb.append('}');
-        return sb.toString();
     }
 
 
@@ -1463,40 +1658,21 @@ public class JSONObject {
      *  with <code>}</code>&nbsp;<small>(right brace)</small>.
      * @throws JSONException If the value is or contains an invalid number.
      */
-    @SuppressWarnings("rawtypes")
-	public static String valueToString(Object value) throws JSONException {
+    public static String valueToString(Object value) throws JSONException {
         if (value == null || value.equals(null)) {
             return "null";
         }
-        if (value instanceof JSONString) {
-            Object object;
-            try {
-                object = ((JSONString)value).toJSONString();
-            } catch (Exception e) {
-                throw new JSONException(e);
-            }
-            if (object instanceof String) {
-                return (String)object;
-            }
-            throw new JSONException("Bad value from toJSONString: " + object);
-        }
-        if (value instanceof Number) {
+        if (value instanceof Number && !(value instanceof JSONString)) {
             return numberToString((Number) value);
         }
-        if (value instanceof Boolean || value instanceof JSONObject ||
-                value instanceof JSONArray) {
-            return value.toString();
-        }
-        if (value instanceof Map) {
-            return new JSONObject((Map)value).toString();
-        }
-        if (value instanceof Collection) {
-            return new JSONArray((Collection)value).toString();
-        }
-        if (value.getClass().isArray()) {
-            return new JSONArray(value).toString();
+        StringWriter w = new StringWriter();
+        synchronized (w.getBuffer()) {
+            try {
+                return writeValue(w, value, -1, 0, false).toString();
+            } catch (IOException exception) {
+                throw new JSONException(exception);
+            }
         }
-        return quote(value.toString());
     }
 
 
@@ -1514,43 +1690,100 @@ public class JSONObject {
      *  with <code>}</code>&nbsp;<small>(right brace)</small>.
      * @throws JSONException If the object contains an invalid number.
      */
-     @SuppressWarnings("rawtypes")
-	static String valueToString(Object value, int indentFactor, int indent)
+    static String valueToString(Object value, int indentFactor, int indent)
             throws JSONException {
+        StringWriter w = new StringWriter();
+        synchronized (w.getBuffer()) {
+            try {
+                return writeValue(w, value, indentFactor, indent, true)
+                        .toString();
+            } catch (IOException exception) {
+                throw new JSONException(exception);
+            }
+        }
+    }
+
+
+     /**
+      * Write a JSON text of an Object value to a writer, following the
+      * rules of {@link #valueToString(Object)} when indentFactor is
+      * negative and of {@link #valueToString(Object, int, int)} otherwise.
+      * JSONObject, JSONArray, Map, Collection and array values are written
+      * in place rather than turned into strings first.
+      * <p>
+      * Warning: This method assumes that the data structure is acyclical.
+      * @param writer The writer.
+      * @param value The value to be serialized.
+      * @param indentFactor The number of spaces to add to each level of
+      *  indentation, or -1 for compact text.
+      * @param indent The indentation of the top level.
+      * @param sortKeys Write the keys of objects in sorted order.
+      * @return The writer.
+      * @throws JSONException If the value is or contains an invalid number.
+      * @throws IOException
+      */
+     @SuppressWarnings("rawtypes")
+	static Writer writeValue(Writer writer, Object value, int indentFactor,
+            int indent, boolean sortKeys) throws JSONException, IOException {
         if (value == null || value.equals(null)) {
-            return "null";
+            writer.write("null");
+            return writer;
         }
-        try {
-            if (value instanceof JSONString) {
-                Object o = ((JSONString)value).toJSONString();
-                if (o instanceof String) {
-                    return (String)o;
+        if (value instanceof JSONString) {
+            Object o;
+            try {
+                o = ((JSONString)value).toJSONString();
+            } catch (Exception e) {
+                if (indentFactor < 0) {
+                    throw new JSONException(e);
                 }
+                o = null;
+            }
+            if (o instanceof String) {
+                writer.write((String)o);
+                return writer;
+            }
+            if (indentFactor < 0) {
+                throw new JSONException("Bad value from toJSONString: " + o);
             }
-        } catch (Exception ignore) {
-        }
-        if (value instanceof Number) {
-            return numberToString((Number) value);
-        }
-        if (value instanceof Boolean) {
-            return value.toString();
-        }
-        if (value instanceof JSONObject) {
-            return ((JSONObject)value).toString(indentFactor, indent);
-        }
-        if (value instanceof JSONArray) {
-            return ((JSONArray)value).toString(indentFactor, indent);
         }
-        if (value instanceof Map) {
-            return new JSONObject((Map)value).toString(indentFactor, indent);
+        if (value instanceof String) {
+            return quote((String)value, writer);
         }
-        if (value instanceof Collection) {
-            return new JSONArray((Collection)value).toString(indentFactor, indent);
+        if (value instanceof Number) {
+            writer.write(numberToString((Number) value));
+        } else if (value instanceof Boolean) {
+            writer.write(value.toString());
+        } else if (value instanceof JSONObject) {
+            ((JSONObject)value).write(writer, indentFactor, indent, sortKeys);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray)value).write(writer, indentFactor, indent, sortKeys);
+        } else if (value instanceof Map) {
+            new JSONObject((Map)value).write(writer, indentFactor, indent,
+                    sortKeys);
+        } else if (value instanceof Collection) {
+            new JSONArray((Collection)value).write(writer, indentFactor,
+                    indent, sortKeys);
+        } else if (value.getClass().isArray()) {
+            new JSONArray(value).write(writer, indentFactor, indent, sortKeys);
+        } else {
+            quote(value.toString(), writer);
         }
-        if (value.getClass().isArray()) {
-            return new JSONArray(value).toString(indentFactor, indent);
+        return writer;
+    }
+
+
+     private static final char[] SPACES = "                ".toCharArray();
+
+     /**
+      * Write a number of spaces to a writer.
+      */
+     static void indent(Writer writer, int indent) throws IOException {
+        while (indent > 0) {
+            int n = Math.min(indent, SPACES.length);
+            writer.write(SPACES, 0, n);
+            indent -= n;
         }
-        return quote(value.toString());
     }
 
 
@@ -1614,34 +1847,91 @@ public class JSONObject {
       * @return The writer.
       * @throws JSONException
       */
-     @SuppressWarnings("rawtypes")
-	public Writer write(Writer writer) throws JSONException {
+     public Writer write(Writer writer) throws JSONException {
+        return this.write(writer, -1, false);
+    }
+
+
+     /**
+      * Write a prettyprinted JSON text of this JSONObject to a writer, as
+      * {@link #toString(int)} would produce it but without building the
+      * text in memory first. Wrap an OutputStream in a {@link UTF8Writer}
+      * to write straight to it.
+      * <p>
+      * Warning: This method assumes that the data structure is acyclical.
+      * @param writer The writer.
+      * @param indentFactor The number of spaces to add to each level of
+      *  indentation.
+      * @return The writer.
+      * @throws JSONException
+      */
+     public Writer write(Writer writer, int indentFactor) throws JSONException {
+        return this.write(writer, indentFactor, true);
+    }
+
+
+     /**
+      * Write the contents of the JSONObject as JSON text to a writer.
+      * <p>
+      * Warning: This method assumes that the data structure is acyclical.
+      * @param writer The writer.
+      * @param indentFactor The number of spaces to add to each level of
+      *  indentation, or -1 for compact text with no whitespace.
+      * @param sortKeys Write the keys of each object in sorted order.
+      * @return The writer.
+      * @throws JSONException
+      */
+     public Writer write(Writer writer, int indentFactor, boolean sortKeys)
+            throws JSONException {
         try {
-            boolean  commanate = false;
-            Iterator keys = keys();
-            writer.write('{');
+            return this.write(writer, indentFactor, 0, sortKeys);
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
 
-            while (keys.hasNext()) {
-                if (commanate) {
+     /**
+      * Write the contents of the JSONObject as JSON text to a writer,
+      * starting at the given indentation.
+      */
+     Writer write(Writer writer, int indentFactor, int indent,
+            boolean sortKeys) throws JSONException, IOException {
+        Object[] keys = this.map.keySet().toArray();
+        if (sortKeys) {
+            Arrays.sort(keys);
+        }
+        int length = keys.length;
+        writer.write('{');
+        if (indentFactor < 0) {
+            for (int i = 0; i < length; i += 1) {
+                if (i > 0) {
                     writer.write(',');
                 }
-                Object key = keys.next();
-                writer.write(quote(key.toString()));
+                quote(keys[i].toString(), writer);
                 writer.write(':');
-                Object value = this.map.get(key);
-                if (value instanceof JSONObject) {
-                    ((JSONObject)value).write(writer);
-                } else if (value instanceof JSONArray) {
-                    ((JSONArray)value).write(writer);
-                } else {
-                    writer.write(valueToString(value));
-                }
-                commanate = true;
+                writeValue(writer, this.value(keys[i].toString()), indentFactor, 0,
+                        sortKeys);
             }
-            writer.write('}');
-            return writer;
-        } catch (IOException exception) {
-            throw new JSONException(exception);
+        } else if (length == 1) {
+            quote(keys[0].toString(), writer);
+            writer.write(": ");
+            writeValue(writer, this.value(keys[0].toString()), indentFactor, indent,
+                    sortKeys);
+        } else if (length > 1) {
+            int newindent = indent + indentFactor;
+            for (int i = 0; i < length; i += 1) {
+                writer.write(i > 0 ? ",\n" : "\n");
+                indent(writer, newindent);
+                quote(keys[i].toString(), writer);
+                writer.write(": ");
+                writeValue(writer, this.value(keys[i].toString()), indentFactor,
+                        newindent, sortKeys);
+            }
+            writer.write('\n');
+            indent(writer, indent);
         }
-     }
-}
\ No newline at end of file
+        writer.write('}');
+        return writer;
+    }
+}
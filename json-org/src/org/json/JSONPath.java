@@ -0,0 +1,281 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONPath is a compiled path expression naming values inside a JSON
+ * text, such as <code>items[*].id</code>. <code>extract</code> walks a text
+ * once with a JSONReader and hands every value matched by any of a set of
+ * paths to a listener. Objects and arrays that no path can lead into are
+ * skipped without being built, so memory use depends on the size of the
+ * matched values, not of the text. For example, <pre>
+ * JSONPath paths[] = {
+ *     new JSONPath("items[*].id"),
+ *     new JSONPath("items[*].lastModifiedDate")
+ * };
+ * JSONPath.extract(new JSONReader(inputStream), paths, new JSONPathListener() {
+ *     public void found(JSONPath path, Object value) {
+ *         ...
+ *     }
+ * });</pre>
+ * <p>
+ * A path is a series of steps, optionally starting with <code>$</code> for
+ * the top level value:
+ * <ul>
+ * <li><code>.name</code> or <code>['name']</code> selects a member of an
+ *  object (the leading <code>.</code> may be left off the first step);</li>
+ * <li><code>[3]</code> selects an element of an array;</li>
+ * <li><code>.*</code> or <code>[*]</code> selects every member or element.</li>
+ * </ul>
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+public class JSONPath {
+
+    /*
+     * Kinds of step.
+     */
+    private static final int NAME = 1;
+    private static final int INDEX = 2;
+    private static final int ANY = 3;
+
+    private String expression;
+    private int    kinds[];
+    private String names[];
+    private int    indexes[];
+
+
+    /**
+     * Compile a path expression.
+     * @param expression A path such as <code>$.items[*].id</code>.
+     * @throws JSONException If the expression is not a valid path.
+     */
+    public JSONPath(String expression) throws JSONException {
+        this.expression = expression;
+        int length = expression.length();
+        int kinds[] = new int[length + 1];
+        String names[] = new String[length + 1];
+        int indexes[] = new int[length + 1];
+        int steps = 0;
+        int i = 0;
+        if (length > 0 && expression.charAt(0) == '$') {
+            i = 1;
+        }
+        while (i < length) {
+            char c = expression.charAt(i);
+            int start;
+            if (c == '[') {
+                i += 1;
+                c = i < length ? expression.charAt(i) : 0;
+                if (c == '*') {
+                    kinds[steps] = ANY;
+                    i += 1;
+                } else if (c == '\'' || c == '"') {
+                    start = i + 1;
+                    i = expression.indexOf(c, start);
+                    if (i < 0) {
+                        throw bad("Unterminated name", start);
+                    }
+                    kinds[steps] = NAME;
+                    names[steps] = expression.substring(start, i);
+                    i += 1;
+                } else {
+                    start = i;
+                    while (i < length && expression.charAt(i) >= '0' &&
+                            expression.charAt(i) <= '9') {
+                        i += 1;
+                    }
+                    if (i == start || i - start > 9) {
+                        throw bad("Expected an index", start);
+                    }
+                    kinds[steps] = INDEX;
+                    indexes[steps] = Integer.parseInt(
+                            expression.substring(start, i));
+                }
+                if (i >= length || expression.charAt(i) != ']') {
+                    throw bad("Expected ']'", i);
+                }
+                i += 1;
+            } else {
+                if (c == '.') {
+                    i += 1;
+                } else if (i > 0) {
+                    throw bad("Expected '.' or '['", i);
+                }
+                if (i < length && expression.charAt(i) == '*') {
+                    kinds[steps] = ANY;
+                    i += 1;
+                } else {
+                    start = i;
+                    while (i < length && expression.charAt(i) != '.' &&
+                            expression.charAt(i) != '[') {
+                        i += 1;
+                    }
+                    if (i == start) {
+                        throw bad("Expected a name", start);
+                    }
+                    kinds[steps] = NAME;
+                    names[steps] = expression.substring(start, i);
+                }
+            }
+            steps += 1;
+        }
+        this.kinds = new int[steps];
+        this.names = new String[steps];
+        this.indexes = new int[steps];
+        System.arraycopy(kinds, 0, this.kinds, 0, steps);
+        System.arraycopy(names, 0, this.names, 0, steps);
+        System.arraycopy(indexes, 0, this.indexes, 0, steps);
+    }
+
+
+    /**
+     * Read the next value from a reader, passing every value matched by
+     * any of the paths to the listener. A value matched by several paths
+     * is built once and passed for each of them. Values that lie inside
+     * a matched value are not matched again.
+     * @param reader The reader, positioned before a value.
+     * @param paths The paths to match.
+     * @param listener The listener to pass the matched values to.
+     * @throws JSONException If there is a syntax error, or the listener
+     *  throws one.
+     */
+    public static void extract(JSONReader reader, JSONPath paths[],
+            JSONPathListener listener) throws JSONException {
+        int steps[][] = new int[8][];
+        steps[0] = new int[paths.length];
+        walk(reader, paths, listener, steps, 0);
+    }
+
+
+    /**
+     * Match the value at depth against the paths. steps[depth][p] is the
+     * number of steps of path p matched so far, or -1 if path p can no
+     * longer match anything here.
+     */
+    private static void walk(JSONReader reader, JSONPath paths[],
+            JSONPathListener listener, int steps[][], int depth)
+            throws JSONException {
+        int current[] = steps[depth];
+        boolean matched = false;
+        boolean open = false;
+        for (int p = 0; p < paths.length; p += 1) {
+            if (current[p] == paths[p].kinds.length) {
+                matched = true;
+            } else if (current[p] >= 0) {
+                open = true;
+            }
+        }
+        if (matched) {
+            Object value = reader.nextValue();
+            for (int p = 0; p < paths.length; p += 1) {
+                if (current[p] == paths[p].kinds.length) {
+                    listener.found(paths[p], value);
+                }
+            }
+            return;
+        }
+        int token = reader.peek();
+        if (!open || (token != JSONReader.BEGIN_OBJECT &&
+                token != JSONReader.BEGIN_ARRAY)) {
+            reader.skipValue();
+            return;
+        }
+        if (depth + 1 == steps.length) {
+            int more[][] = new int[steps.length * 2][];
+            System.arraycopy(steps, 0, more, 0, steps.length);
+            steps = more;
+        }
+        if (steps[depth + 1] == null) {
+            steps[depth + 1] = new int[paths.length];
+        }
+        int next[] = steps[depth + 1];
+        if (token == JSONReader.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (advance(paths, current, next, name, -1)) {
+                    walk(reader, paths, listener, steps, depth + 1);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } else {
+            reader.beginArray();
+            for (int index = 0; reader.hasNext(); index += 1) {
+                if (advance(paths, current, next, null, index)) {
+                    walk(reader, paths, listener, steps, depth + 1);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endArray();
+        }
+    }
+
+
+    /**
+     * Work out which paths go on into a member (name) or element (index),
+     * filling in next.
+     * @return true if any path does.
+     */
+    private static boolean advance(JSONPath paths[], int current[],
+            int next[], String name, int index) {
+        boolean any = false;
+        for (int p = 0; p < paths.length; p += 1) {
+            int step = current[p];
+            next[p] = -1;
+            if (step >= 0) {
+                JSONPath path = paths[p];
+                int kind = path.kinds[step];
+                if (kind == ANY ||
+                        (kind == NAME && name != null &&
+                            name.equals(path.names[step])) ||
+                        (kind == INDEX && name == null &&
+                            index == path.indexes[step])) {
+                    next[p] = step + 1;
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+
+
+    private JSONException bad(String message, int at) {
+        return new JSONException(message + " at " + at + " in path " +
+                this.expression);
+    }
+
+
+    /**
+     * Get the expression the path was compiled from.
+     * @return The expression.
+     */
+    public String toString() {
+        return this.expression;
+    }
+}
@@ -0,0 +1,43 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONPathListener receives the values matched by
+ * {@link JSONPath#extract(JSONReader, JSONPath[], JSONPathListener)}.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+public interface JSONPathListener {
+    /**
+     * Called for each value matched by a path, in the order the values
+     * appear in the text.
+     * @param path The path that matched.
+     * @param value The value: a JSONObject, JSONArray, String, Number,
+     *  Boolean or JSONObject.NULL.
+     * @throws JSONException To stop the extraction.
+     */
+    public void found(JSONPath path, Object value) throws JSONException;
+}
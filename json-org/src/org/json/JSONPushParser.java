@@ -0,0 +1,639 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.nio.ByteBuffer;
+
+/**
+ * A JSONPushParser parses JSON text that is pushed to it in pieces, as the
+ * bytes arrive from a socket, a non-blocking channel or an asynchronous
+ * HTTP client, instead of pulling it from a Reader. <code>feed</code>
+ * takes whatever bytes are at hand and returns as soon as they have been
+ * parsed; a token, a UTF-8 sequence or a <code>&#92;u</code> escape may be
+ * split anywhere between two pieces. The objects and arrays are built as
+ * their text arrives, so parsing overlaps with receiving, and each value
+ * at the top level is passed to a JSONPushListener the moment it is
+ * complete. A stream may hold any number of top level values, such as one
+ * object per line. For example, <pre>
+ * JSONPushParser parser = new JSONPushParser(new JSONPushListener() {
+ *     public void value(Object value) {
+ *         ...
+ *     }
+ * });
+ * while (channel.read(buffer) >= 0) {
+ *     buffer.flip();
+ *     parser.feed(buffer);
+ *     buffer.clear();
+ * }
+ * parser.end();</pre>
+ * <p>
+ * The parser accepts the same forgiving syntax as the JSONObject and
+ * JSONArray constructors, except that a key must be a string or an
+ * unquoted word, not an object or array. After a syntax error, or an
+ * exception thrown by the listener, the parser refuses any more text.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+public class JSONPushParser {
+
+    /*
+     * States. Each one says what the parser expects next.
+     */
+    private static final int VALUE = 0;
+    private static final int ELEMENT = 1;
+    private static final int ARRAY_SEPARATOR = 2;
+    private static final int KEY = 3;
+    private static final int COLON = 4;
+    private static final int ARROW = 5;
+    private static final int OBJECT_SEPARATOR = 6;
+    private static final int STRING = 7;
+    private static final int UNQUOTED = 8;
+    private static final int FAILED = 9;
+
+    /**
+     * The characters that end an unquoted value.
+     */
+    private static final String DELIMITERS = ",:]}/\\\"[{;=#";
+
+    private final JSONPushListener listener;
+
+    private int state = VALUE;
+
+    /**
+     * The objects and arrays that are open, innermost last.
+     */
+    private Object stack[] = new Object[16];
+    private int top;
+
+    /**
+     * For each open object or array, the key it will be put under in the
+     * object that holds it.
+     */
+    private String keys[] = new String[16];
+
+    /**
+     * The key of the member whose value is being read.
+     */
+    private String key;
+
+    /**
+     * Set while the string or unquoted word being read is a key.
+     */
+    private boolean readingKey;
+
+    /**
+     * The quote character of the string being read.
+     */
+    private char quote;
+
+    /**
+     * The progress through an escape in a string: 0 outside of one, 1 after
+     * the backslash, or 2 to 5 for the hex digits of a \\u escape.
+     */
+    private int escape;
+
+    /**
+     * The value of the hex digits of a \\u escape read so far.
+     */
+    private int unicode;
+
+    /**
+     * Holds the characters of a string or unquoted word.
+     */
+    private final StringBuilder sb = new StringBuilder();
+
+    /*
+     * The UTF-8 sequence being decoded: the bits so far, the number of
+     * bytes still to come, and the smallest code point the sequence may
+     * stand for.
+     */
+    private int utf8Bits;
+    private int utf8Needed;
+    private int utf8Minimum;
+
+    /**
+     * Decoded characters waiting to be parsed.
+     */
+    private final char chars[] = new char[8192];
+
+    private long index;
+    private long line = 1;
+    private long character = 1;
+    private char previous;
+
+
+    /**
+     * Construct a JSONPushParser.
+     * @param listener The listener that will receive each top level value.
+     */
+    public JSONPushParser(JSONPushListener listener) {
+        this.listener = listener;
+    }
+
+
+    /**
+     * Parse the next piece of a UTF-8 encoded text.
+     * @param bytes An array holding the bytes.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     * @throws JSONException If there is a syntax error, or the listener
+     *  throws one.
+     */
+    public void feed(byte bytes[], int offset, int length)
+            throws JSONException {
+        char chars[] = this.chars;
+        int n = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i += 1) {
+            if (n >= chars.length - 2) {
+                feed(chars, 0, n);
+                n = 0;
+            }
+            int b = bytes[i];
+            if (this.utf8Needed > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    this.utf8Bits = (this.utf8Bits << 6) | (b & 0x3F);
+                    this.utf8Needed -= 1;
+                    if (this.utf8Needed == 0) {
+                        n = decoded(chars, n);
+                    }
+                    continue;
+                }
+
+// A sequence that is cut short stands for one bad character, and the byte
+// that cut it short starts afresh.
+
+                this.utf8Needed = 0;
+                chars[n++] = '\uFFFD';
+            }
+            if (b >= 0) {
+                chars[n++] = (char)b;
+            } else if ((b & 0xE0) == 0xC0) {
+                this.utf8Bits = b & 0x1F;
+                this.utf8Needed = 1;
+                this.utf8Minimum = 0x80;
+            } else if ((b & 0xF0) == 0xE0) {
+                this.utf8Bits = b & 0x0F;
+                this.utf8Needed = 2;
+                this.utf8Minimum = 0x800;
+            } else if ((b & 0xF8) == 0xF0) {
+                this.utf8Bits = b & 0x07;
+                this.utf8Needed = 3;
+                this.utf8Minimum = 0x10000;
+            } else {
+                chars[n++] = '\uFFFD';
+            }
+        }
+        feed(chars, 0, n);
+    }
+
+
+    /**
+     * Put the character or characters of a complete UTF-8 sequence in a
+     * buffer.
+     * @return The new number of characters in the buffer.
+     */
+    private int decoded(char chars[], int n) {
+        int codePoint = this.utf8Bits;
+        if (codePoint < this.utf8Minimum || codePoint > 0x10FFFF ||
+                (codePoint >= 0xD800 && codePoint < 0xE000)) {
+            chars[n++] = '\uFFFD';
+        } else if (codePoint >= 0x10000) {
+            codePoint -= 0x10000;
+            chars[n++] = (char)(0xD800 | (codePoint >>> 10));
+            chars[n++] = (char)(0xDC00 | (codePoint & 0x3FF));
+        } else {
+            chars[n++] = (char)codePoint;
+        }
+        return n;
+    }
+
+
+    /**
+     * Parse the next piece of a UTF-8 encoded text. All of the bytes
+     * remaining in the buffer are used.
+     * @param buffer A buffer holding the bytes.
+     * @throws JSONException If there is a syntax error, or the listener
+     *  throws one.
+     */
+    public void feed(ByteBuffer buffer) throws JSONException {
+        if (buffer.hasArray()) {
+            feed(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        byte bytes[] = new byte[Math.min(buffer.remaining(), 8192)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), bytes.length);
+            buffer.get(bytes, 0, length);
+            feed(bytes, 0, length);
+        }
+    }
+
+
+    /**
+     * Parse the next piece of a text that has already been decoded.
+     * @param text An array holding the characters.
+     * @param offset The index of the first character.
+     * @param length The number of characters.
+     * @throws JSONException If there is a syntax error, or the listener
+     *  throws one.
+     */
+    public void feed(char text[], int offset, int length)
+            throws JSONException {
+        int end = offset + length;
+        int i = offset;
+        try {
+            while (i < end) {
+                if (this.state == STRING && this.escape == 0) {
+
+// Copy a run of plain characters in a string in one piece.
+
+                    int run = i;
+                    char q = this.quote;
+                    while (run < end) {
+                        char c = text[run];
+                        if (c == q || c == '\\' || c == '\n' || c == '\r' ||
+                                c == 0) {
+                            break;
+                        }
+                        run += 1;
+                    }
+                    if (run > i) {
+                        this.sb.append(text, i, run - i);
+                        this.index += run - i;
+                        this.character += run - i;
+                        this.previous = text[run - 1];
+                        i = run;
+                        continue;
+                    }
+                }
+                char c = text[i];
+                i += 1;
+                this.index += 1;
+                if (this.previous == '\r') {
+                    this.line += 1;
+                    this.character = c == '\n' ? 0 : 1;
+                } else if (c == '\n') {
+                    this.line += 1;
+                    this.character = 0;
+                } else {
+                    this.character += 1;
+                }
+                this.previous = c;
+                parse(c);
+            }
+        } catch (JSONException e) {
+            this.state = FAILED;
+            throw e;
+        } catch (RuntimeException e) {
+            this.state = FAILED;
+            throw e;
+        }
+    }
+
+
+    /**
+     * Signal the end of the text. A value still open at the end is an
+     * error, except an unquoted value at the top level, which the end
+     * completes.
+     * @throws JSONException If the text ended in the middle of a value.
+     */
+    public void end() throws JSONException {
+        if (this.state == FAILED) {
+            throw new JSONException("The parser has failed.");
+        }
+        if (this.utf8Needed > 0) {
+            this.utf8Needed = 0;
+            feed(new char[] {'\uFFFD'}, 0, 1);
+        }
+        if (this.state == UNQUOTED && this.top == 0) {
+            parse(' ' - 1);
+        }
+        if (this.state == STRING) {
+            throw fail("Unterminated string");
+        }
+        if (this.top > 0) {
+            throw fail(this.stack[this.top - 1] instanceof JSONObject ?
+                    "A JSONObject text must end with '}'" :
+                    "A JSONArray text must end with ']'");
+        }
+    }
+
+
+    /**
+     * Get the number of objects and arrays that are open.
+     * @return The depth.
+     */
+    public int getDepth() {
+        return this.top;
+    }
+
+
+    /**
+     * Parse one character.
+     */
+    private void parse(int c) throws JSONException {
+        for (;;) {
+            switch (this.state) {
+            case FAILED:
+                throw new JSONException("The parser has failed.");
+            case STRING:
+                string((char)c);
+                return;
+            case UNQUOTED:
+                if (c >= ' ' && DELIMITERS.indexOf(c) < 0) {
+                    this.sb.append((char)c);
+                    return;
+                }
+                String string = this.sb.toString().trim();
+                if (string.length() == 0) {
+                    throw fail("Missing value");
+                }
+                Object value = JSONObject.stringToValue(string);
+                if (this.readingKey) {
+                    this.key = value.toString();
+                    this.state = COLON;
+                } else {
+                    value(value);
+                }
+
+// The character that ended the value belongs to what follows it.
+
+                continue;
+            case ARROW:
+                this.state = VALUE;
+                if (c == '>') {
+                    return;
+                }
+                continue;
+            }
+            if (c > 0 && c <= ' ') {
+                return;
+            }
+            switch (this.state) {
+            case VALUE:
+                switch (c) {
+                case '"':
+                case '\'':
+                    begin((char)c, false);
+                    return;
+                case '{':
+                    push(new JSONObject());
+                    this.state = KEY;
+                    return;
+                case '[':
+                    push(new JSONArray());
+                    this.state = ELEMENT;
+                    return;
+                default:
+                    beginUnquoted(c, false);
+                    return;
+                }
+            case ELEMENT:
+                if (c == ']') {
+                    pop();
+                    return;
+                }
+                if (c == ',') {
+                    value(JSONObject.NULL);
+                    continue;
+                }
+                this.state = VALUE;
+                continue;
+            case ARRAY_SEPARATOR:
+                switch (c) {
+                case ',':
+                case ';':
+                    this.state = ELEMENT;
+                    return;
+                case ']':
+                    pop();
+                    return;
+                default:
+                    throw fail("Expected a ',' or ']'");
+                }
+            case KEY:
+                switch (c) {
+                case '}':
+                    pop();
+                    return;
+                case '"':
+                case '\'':
+                    begin((char)c, true);
+                    return;
+                case '{':
+                case '[':
+                    throw fail("Expected a key");
+                default:
+                    if (c <= 0) {
+                        throw fail("A JSONObject text must end with '}'");
+                    }
+                    beginUnquoted(c, true);
+                    return;
+                }
+            case COLON:
+                if (c == '=') {
+                    this.state = ARROW;
+                } else if (c == ':') {
+                    this.state = VALUE;
+                } else {
+                    throw fail("Expected a ':' after a key");
+                }
+                return;
+            case OBJECT_SEPARATOR:
+                switch (c) {
+                case ',':
+                case ';':
+                    this.state = KEY;
+                    return;
+                case '}':
+                    pop();
+                    return;
+                default:
+                    throw fail("Expected a ',' or '}'");
+                }
+            }
+        }
+    }
+
+
+    private void begin(char quote, boolean key) {
+        this.quote = quote;
+        this.readingKey = key;
+        this.sb.setLength(0);
+        this.state = STRING;
+    }
+
+
+    private void beginUnquoted(int c, boolean key) throws JSONException {
+        if (c < ' ' || DELIMITERS.indexOf(c) >= 0) {
+            throw fail("Missing value");
+        }
+        this.readingKey = key;
+        this.sb.setLength(0);
+        this.sb.append((char)c);
+        this.state = UNQUOTED;
+    }
+
+
+    /**
+     * Parse one character of a string, as JSONTokener.nextString does.
+     */
+    private void string(char c) throws JSONException {
+        switch (this.escape) {
+        case 0:
+            if (c == this.quote) {
+                String string = this.sb.toString();
+                if (this.readingKey) {
+                    this.key = string;
+                    this.state = COLON;
+                } else {
+                    value(string);
+                }
+            } else if (c == '\\') {
+                this.escape = 1;
+            } else if (c == 0 || c == '\n' || c == '\r') {
+                throw fail("Unterminated string");
+            } else {
+                this.sb.append(c);
+            }
+            return;
+        case 1:
+            this.escape = 0;
+            switch (c) {
+            case 'b':
+                this.sb.append('\b');
+                return;
+            case 't':
+                this.sb.append('\t');
+                return;
+            case 'n':
+                this.sb.append('\n');
+                return;
+            case 'f':
+                this.sb.append('\f');
+                return;
+            case 'r':
+                this.sb.append('\r');
+                return;
+            case 'u':
+                this.escape = 2;
+                this.unicode = 0;
+                return;
+            case '"':
+            case '\'':
+            case '\\':
+            case '/':
+                this.sb.append(c);
+                return;
+            default:
+                throw fail("Illegal escape.");
+            }
+        default:
+            int digit = JSONTokener.dehexchar(c);
+            if (digit < 0) {
+                throw fail("Illegal escape.");
+            }
+            this.unicode = (this.unicode << 4) | digit;
+            if (this.escape == 5) {
+                this.escape = 0;
+                this.sb.append((char)this.unicode);
+            } else {
+                this.escape += 1;
+            }
+        }
+    }
+
+
+    /**
+     * Put a complete value where it belongs: in the innermost open array or
+     * object, or, at the top level, in the hands of the listener.
+     */
+    private void value(Object value) throws JSONException {
+        if (this.top == 0) {
+            this.state = VALUE;
+            this.listener.value(value);
+            return;
+        }
+        Object container = this.stack[this.top - 1];
+        if (container instanceof JSONArray) {
+            ((JSONArray)container).put(value);
+            this.state = ARRAY_SEPARATOR;
+        } else {
+            ((JSONObject)container).putOnce(this.key, value);
+            this.key = null;
+            this.state = OBJECT_SEPARATOR;
+        }
+    }
+
+
+    private void push(Object container) {
+        if (this.top == this.stack.length) {
+            Object more[] = new Object[this.top * 2];
+            System.arraycopy(this.stack, 0, more, 0, this.top);
+            this.stack = more;
+            String moreKeys[] = new String[this.top * 2];
+            System.arraycopy(this.keys, 0, moreKeys, 0, this.top);
+            this.keys = moreKeys;
+        }
+        this.stack[this.top] = container;
+        this.keys[this.top] = this.key;
+        this.top += 1;
+    }
+
+
+    private void pop() throws JSONException {
+        this.top -= 1;
+        Object container = this.stack[this.top];
+        this.key = this.keys[this.top];
+        this.stack[this.top] = null;
+        this.keys[this.top] = null;
+        value(container);
+    }
+
+
+    /**
+     * Make a JSONException to signal a syntax error, and refuse any more
+     * text.
+     * @param message The error message.
+     * @return A JSONException object, suitable for throwing
+     */
+    private JSONException fail(String message) {
+        this.state = FAILED;
+        return new JSONException(message + toString());
+    }
+
+
+    /**
+     * Make a printable string of the parser's position.
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        return " at " + this.index + " [character " + this.character +
+            " line " + this.line + "]";
+    }
+}
@@ -0,0 +1,891 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONReader reads a JSON text one token at a time, without building a
+ * JSONObject or JSONArray for the whole text. Memory use depends only on
+ * the nesting depth and the size of the largest single string, so texts
+ * much larger than the heap can be processed.
+ * <p>
+ * <code>peek</code> returns the type of the next token:
+ * <code>BEGIN_OBJECT</code>, <code>END_OBJECT</code>,
+ * <code>BEGIN_ARRAY</code>, <code>END_ARRAY</code>, <code>NAME</code>,
+ * <code>STRING</code>, <code>NUMBER</code>, <code>BOOLEAN</code>,
+ * <code>NULL</code> or <code>END_DOCUMENT</code>. The matching
+ * <code>begin</code>, <code>end</code> and <code>next</code> methods consume
+ * it. <code>skipValue</code> consumes a whole value (including any nested
+ * objects and arrays) without keeping any of it, and <code>nextValue</code>
+ * reads the next value into a JSONObject, JSONArray, String, Number,
+ * Boolean or <code>JSONObject.NULL</code>, so the tree API can still be used
+ * for the parts of a text that are wanted. For example, <pre>
+ * JSONReader reader = new JSONReader(inputStream);
+ * reader.beginObject();
+ * while (reader.hasNext()) {
+ *     if (reader.nextName().equals("items")) {
+ *         reader.beginArray();
+ *         while (reader.hasNext()) {
+ *             JSONObject video = (JSONObject) reader.nextValue();
+ *             ...
+ *         }
+ *         reader.endArray();
+ *     } else {
+ *         reader.skipValue();
+ *     }
+ * }
+ * reader.endObject();</pre>
+ * <p>
+ * The reader accepts the same forgiving syntax as the JSONObject and
+ * JSONArray constructors: single quoted and unquoted strings,
+ * <code>=</code> and <code>=></code> after keys, <code>;</code> between
+ * values, an extra <code>,</code> before a closing brace or bracket, and
+ * <code>null</code> for elided array elements. Several texts in a row (for
+ * example one object per line) can be read by calling <code>peek</code>
+ * again after the first one ends.
+ * @author JSON.org
+ * @version 2012-06-01
+ */
+public class JSONReader {
+
+    public static final int BEGIN_OBJECT = 1;
+    public static final int END_OBJECT = 2;
+    public static final int BEGIN_ARRAY = 3;
+    public static final int END_ARRAY = 4;
+    public static final int NAME = 5;
+    public static final int STRING = 6;
+    public static final int NUMBER = 7;
+    public static final int BOOLEAN = 8;
+    public static final int NULL = 9;
+    public static final int END_DOCUMENT = 10;
+
+    private static final int NONE = 0;
+
+    /*
+     * Scopes kept on the stack. Each one says what may come next.
+     */
+    private static final int DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int OBJECT = 6;
+
+    private static final String TOKEN_NAMES[] = {
+        "NONE", "BEGIN_OBJECT", "END_OBJECT", "BEGIN_ARRAY", "END_ARRAY",
+        "NAME", "STRING", "NUMBER", "BOOLEAN", "NULL", "END_DOCUMENT"
+    };
+
+    private Reader reader;
+    private char buffer[];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private int index;
+    private int line;
+    private int character;
+
+    private int stack[];
+    private int top;
+
+    /**
+     * The token that peek found but that has not been consumed yet.
+     */
+    private int peeked;
+
+    /**
+     * The quote character of a peeked string or name whose contents have
+     * not been read yet, or 0 if peekedText already holds it.
+     */
+    private char peekedQuote;
+
+    /**
+     * The text of a peeked unquoted value or name.
+     */
+    private String peekedText;
+
+    /**
+     * The value of a peeked number, boolean or null.
+     */
+    private Object peekedValue;
+
+    private StringBuilder builder;
+
+
+    /**
+     * Construct a JSONReader from a Reader.
+     *
+     * @param reader     A reader.
+     */
+    public JSONReader(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[8192];
+        this.pos = 0;
+        this.limit = 0;
+        this.eof = false;
+        this.index = 0;
+        this.line = 1;
+        this.character = 1;
+        this.stack = new int[32];
+        this.top = 0;
+        this.stack[this.top++] = DOCUMENT;
+        this.peeked = NONE;
+        this.builder = new StringBuilder();
+    }
+
+
+    /**
+     * Construct a JSONReader from an InputStream. The stream is read as
+     * UTF-8.
+     *
+     * @param inputStream     An input stream.
+     */
+    public JSONReader(InputStream inputStream) throws JSONException {
+        this(utf8Reader(inputStream));
+    }
+
+
+    /**
+     * Construct a JSONReader from a string.
+     *
+     * @param s     A source string.
+     */
+    public JSONReader(String s) {
+        this(new StringReader(s));
+    }
+
+
+    private static Reader utf8Reader(InputStream inputStream)
+            throws JSONException {
+        try {
+            return new InputStreamReader(inputStream, "UTF-8");
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    /**
+     * Get the type of the next token without consuming it.
+     *
+     * @return One of the token constants, <code>END_DOCUMENT</code> once
+     *  there is nothing left to read.
+     * @throws JSONException If there is a syntax error.
+     */
+    public int peek() throws JSONException {
+        if (this.peeked != NONE) {
+            return this.peeked;
+        }
+        char c;
+        switch (this.stack[this.top - 1]) {
+        case EMPTY_ARRAY:
+            this.stack[this.top - 1] = ARRAY;
+            c = nextClean();
+            if (c == ']') {
+                return this.peeked = END_ARRAY;
+            }
+            back(c);
+            return readArrayElement();
+        case ARRAY:
+            c = nextClean();
+            switch (c) {
+            case ']':
+                return this.peeked = END_ARRAY;
+            case ';':
+            case ',':
+                c = nextClean();
+                if (c == ']') {
+                    return this.peeked = END_ARRAY;
+                }
+                back(c);
+                return readArrayElement();
+            default:
+                throw syntaxError("Expected a ',' or ']'");
+            }
+        case EMPTY_OBJECT:
+            c = nextClean();
+            if (c == '}') {
+                return this.peeked = END_OBJECT;
+            }
+            back(c);
+            return readName();
+        case OBJECT:
+            c = nextClean();
+            switch (c) {
+            case '}':
+                return this.peeked = END_OBJECT;
+            case ';':
+            case ',':
+                c = nextClean();
+                if (c == '}') {
+                    return this.peeked = END_OBJECT;
+                }
+                back(c);
+                return readName();
+            default:
+                throw syntaxError("Expected a ',' or '}'");
+            }
+        case DANGLING_NAME:
+
+// The key is followed by ':'. We will also tolerate '=' or '=>'.
+
+            c = nextClean();
+            if (c == '=') {
+                c = next();
+                if (c != '>') {
+                    back(c);
+                }
+            } else if (c != ':') {
+                throw syntaxError("Expected a ':' after a key");
+            }
+            this.stack[this.top - 1] = OBJECT;
+            return readValue(nextClean());
+        default:
+            c = nextClean();
+            if (c == 0) {
+                return this.peeked = END_DOCUMENT;
+            }
+            return readValue(c);
+        }
+    }
+
+
+    /**
+     * Determine if the current array or object has more elements.
+     *
+     * @return true if the next token is not the end of an array, an object
+     *  or the document.
+     * @throws JSONException If there is a syntax error.
+     */
+    public boolean hasNext() throws JSONException {
+        int token = peek();
+        return token != END_OBJECT && token != END_ARRAY &&
+                token != END_DOCUMENT;
+    }
+
+
+    /**
+     * Consume the beginning of an object.
+     * @throws JSONException If the next token is not BEGIN_OBJECT.
+     */
+    public void beginObject() throws JSONException {
+        expect(BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+
+    /**
+     * Consume the end of an object.
+     * @throws JSONException If the next token is not END_OBJECT.
+     */
+    public void endObject() throws JSONException {
+        expect(END_OBJECT);
+        this.top -= 1;
+    }
+
+
+    /**
+     * Consume the beginning of an array.
+     * @throws JSONException If the next token is not BEGIN_ARRAY.
+     */
+    public void beginArray() throws JSONException {
+        expect(BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+
+    /**
+     * Consume the end of an array.
+     * @throws JSONException If the next token is not END_ARRAY.
+     */
+    public void endArray() throws JSONException {
+        expect(END_ARRAY);
+        this.top -= 1;
+    }
+
+
+    /**
+     * Consume a key.
+     * @return The key.
+     * @throws JSONException If the next token is not NAME.
+     */
+    public String nextName() throws JSONException {
+        if (peek() != NAME) {
+            throw unexpected(NAME);
+        }
+        String name = takeText();
+        this.stack[this.top - 1] = DANGLING_NAME;
+        return name;
+    }
+
+
+    /**
+     * Consume a string. Numbers and booleans are also accepted, and
+     * returned as their text.
+     * @return The string.
+     * @throws JSONException If the next token is not a string, number or
+     *  boolean.
+     */
+    public String nextString() throws JSONException {
+        int token = peek();
+        if (token != STRING && token != NUMBER && token != BOOLEAN) {
+            throw unexpected(STRING);
+        }
+        return takeText();
+    }
+
+
+    /**
+     * Consume a number. Quoted strings that look like numbers are also
+     * accepted.
+     * @return An Integer, Long or Double, as JSONObject.stringToValue
+     *  would produce.
+     * @throws JSONException If the next token is not a number.
+     */
+    public Number nextNumber() throws JSONException {
+        int token = peek();
+        if (token == NUMBER) {
+            Number number = (Number) this.peekedValue;
+            consumed();
+            return number;
+        }
+        if (token == STRING) {
+            String text = takeText();
+            Object value = JSONObject.stringToValue(text);
+            if (value instanceof Number) {
+                return (Number) value;
+            }
+            throw syntaxError("Expected a number and instead saw \"" +
+                    text + "\"");
+        }
+        throw unexpected(NUMBER);
+    }
+
+
+    /**
+     * Consume a number as a double.
+     * @return The value.
+     * @throws JSONException If the next token is not a number.
+     */
+    public double nextDouble() throws JSONException {
+        return nextNumber().doubleValue();
+    }
+
+
+    /**
+     * Consume a number as a long.
+     * @return The value.
+     * @throws JSONException If the next token is not a number.
+     */
+    public long nextLong() throws JSONException {
+        return nextNumber().longValue();
+    }
+
+
+    /**
+     * Consume a number as an int.
+     * @return The value.
+     * @throws JSONException If the next token is not a number.
+     */
+    public int nextInt() throws JSONException {
+        return nextNumber().intValue();
+    }
+
+
+    /**
+     * Consume a boolean.
+     * @return The value.
+     * @throws JSONException If the next token is not a boolean.
+     */
+    public boolean nextBoolean() throws JSONException {
+        if (peek() != BOOLEAN) {
+            throw unexpected(BOOLEAN);
+        }
+        boolean value = ((Boolean) this.peekedValue).booleanValue();
+        consumed();
+        return value;
+    }
+
+
+    /**
+     * Consume a null.
+     * @throws JSONException If the next token is not null.
+     */
+    public void nextNull() throws JSONException {
+        if (peek() != NULL) {
+            throw unexpected(NULL);
+        }
+        consumed();
+    }
+
+
+    /**
+     * Consume the next value and return it using the tree API: a
+     * JSONObject, JSONArray, String, Integer, Long, Double, Boolean or
+     * JSONObject.NULL.
+     * @return The value.
+     * @throws JSONException If there is a syntax error or no value is next.
+     */
+    public Object nextValue() throws JSONException {
+        switch (peek()) {
+        case BEGIN_OBJECT:
+            JSONObject jo = new JSONObject();
+            beginObject();
+            while (hasNext()) {
+                String key = nextName();
+                jo.putOnce(key, nextValue());
+            }
+            endObject();
+            return jo;
+        case BEGIN_ARRAY:
+            JSONArray ja = new JSONArray();
+            beginArray();
+            while (hasNext()) {
+                ja.put(nextValue());
+            }
+            endArray();
+            return ja;
+        case STRING:
+            return takeText();
+        case NUMBER:
+            return nextNumber();
+        case BOOLEAN:
+            return nextBoolean() ? Boolean.TRUE : Boolean.FALSE;
+        case NULL:
+            nextNull();
+            return JSONObject.NULL;
+        default:
+            throw syntaxError("Expected a value and instead saw " +
+                    TOKEN_NAMES[this.peeked]);
+        }
+    }
+
+
+    /**
+     * Consume the next value, including everything nested in it, without
+     * keeping any of it. A key may also be skipped, together with its value.
+     * @throws JSONException If there is a syntax error or no value is next.
+     */
+    public void skipValue() throws JSONException {
+        int depth = 0;
+        for (;;) {
+            switch (peek()) {
+            case BEGIN_OBJECT:
+                beginObject();
+                depth += 1;
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                depth += 1;
+                break;
+            case END_OBJECT:
+                if (depth == 0) {
+                    throw unexpected(NONE);
+                }
+                endObject();
+                depth -= 1;
+                break;
+            case END_ARRAY:
+                if (depth == 0) {
+                    throw unexpected(NONE);
+                }
+                endArray();
+                depth -= 1;
+                break;
+            case NAME:
+
+// A skipped key takes its value with it.
+
+                skipText();
+                this.stack[this.top - 1] = DANGLING_NAME;
+                continue;
+            case END_DOCUMENT:
+                throw unexpected(NONE);
+            default:
+                skipText();
+            }
+            if (depth == 0) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Get the depth of the current position: 0 outside of any object or
+     * array, 1 inside the outermost one, and so on.
+     * @return The nesting depth.
+     */
+    public int getDepth() {
+        return this.top - 1;
+    }
+
+
+    /**
+     * Close the underlying reader.
+     * @throws JSONException If the reader can't be closed.
+     */
+    public void close() throws JSONException {
+        this.peeked = NONE;
+        this.top = 1;
+        this.stack[0] = DOCUMENT;
+        try {
+            this.reader.close();
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    private int readArrayElement() throws JSONException {
+        char c = nextClean();
+        if (c == ',') {
+
+// An elided element is null.
+
+            back(c);
+            this.peekedValue = JSONObject.NULL;
+            return this.peeked = NULL;
+        }
+        return readValue(c);
+    }
+
+
+    private int readName() throws JSONException {
+        char c = nextClean();
+        switch (c) {
+        case 0:
+            throw syntaxError("A JSONObject text must end with '}'");
+        case '"':
+        case '\'':
+            this.peekedQuote = c;
+            return this.peeked = NAME;
+        default:
+            this.peekedText = readUnquoted(c);
+            this.peekedQuote = 0;
+            return this.peeked = NAME;
+        }
+    }
+
+
+    private int readValue(char c) throws JSONException {
+        switch (c) {
+        case '{':
+            return this.peeked = BEGIN_OBJECT;
+        case '[':
+            return this.peeked = BEGIN_ARRAY;
+        case '"':
+        case '\'':
+            this.peekedQuote = c;
+            return this.peeked = STRING;
+        }
+        String string = readUnquoted(c);
+        this.peekedText = string;
+        this.peekedQuote = 0;
+        Object value = JSONObject.stringToValue(string);
+        this.peekedValue = value;
+        if (value instanceof Boolean) {
+            return this.peeked = BOOLEAN;
+        }
+        if (value == JSONObject.NULL) {
+            return this.peeked = NULL;
+        }
+        if (value instanceof Number) {
+            return this.peeked = NUMBER;
+        }
+        return this.peeked = STRING;
+    }
+
+
+    /*
+     * Handle unquoted text. This could be the values true, false, or
+     * null, or it can be a number, or a string that needs no quotes.
+     */
+    private String readUnquoted(char c) throws JSONException {
+        this.builder.setLength(0);
+        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+            this.builder.append(c);
+            c = next();
+        }
+        back(c);
+        String string = this.builder.toString().trim();
+        if (string.length() == 0) {
+            throw syntaxError("Missing value");
+        }
+        return string;
+    }
+
+
+    private String takeText() throws JSONException {
+        String text;
+        if (this.peekedQuote != 0) {
+            text = readString(this.peekedQuote);
+        } else {
+            text = this.peekedText;
+        }
+        consumed();
+        return text;
+    }
+
+
+    private void skipText() throws JSONException {
+        if (this.peekedQuote != 0) {
+            skipString(this.peekedQuote);
+        }
+        consumed();
+    }
+
+
+    private void consumed() {
+        this.peeked = NONE;
+        this.peekedQuote = 0;
+        this.peekedText = null;
+        this.peekedValue = null;
+    }
+
+
+    /**
+     * Read the rest of a quoted string. Runs of plain characters are copied
+     * straight from the buffer.
+     */
+    private String readString(char quote) throws JSONException {
+        StringBuilder sb = this.builder;
+        sb.setLength(0);
+        for (;;) {
+            int start = this.pos;
+            while (this.pos < this.limit) {
+                char c = this.buffer[this.pos];
+                if (c == quote || c == '\\' || c == '\n' || c == '\r') {
+                    break;
+                }
+                this.pos += 1;
+            }
+            sb.append(this.buffer, start, this.pos - start);
+            this.index += this.pos - start;
+            this.character += this.pos - start;
+
+            char c = next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw syntaxError("Unterminated string");
+            case '\\':
+                sb.append(readEscape());
+                break;
+            default:
+                if (c == quote) {
+                    return sb.toString();
+                }
+                sb.append(c);
+            }
+        }
+    }
+
+
+    /**
+     * Skip the rest of a quoted string without keeping it.
+     */
+    private void skipString(char quote) throws JSONException {
+        for (;;) {
+            char c = next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw syntaxError("Unterminated string");
+            case '\\':
+                readEscape();
+                break;
+            default:
+                if (c == quote) {
+                    return;
+                }
+            }
+        }
+    }
+
+
+    private char readEscape() throws JSONException {
+        char c = next();
+        switch (c) {
+        case 'b':
+            return '\b';
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'f':
+            return '\f';
+        case 'r':
+            return '\r';
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i += 1) {
+                int hex = JSONTokener.dehexchar(next());
+                if (hex < 0) {
+                    throw syntaxError("Illegal escape.");
+                }
+                value = (value << 4) | hex;
+            }
+            return (char) value;
+        case '"':
+        case '\'':
+        case '\\':
+        case '/':
+            return c;
+        default:
+            throw syntaxError("Illegal escape.");
+        }
+    }
+
+
+    private void expect(int token) throws JSONException {
+        if (peek() != token) {
+            throw unexpected(token);
+        }
+        consumed();
+    }
+
+
+    private void push(int scope) {
+        if (this.top == this.stack.length) {
+            int newStack[] = new int[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, newStack, 0, this.top);
+            this.stack = newStack;
+        }
+        this.stack[this.top++] = scope;
+    }
+
+
+    private JSONException unexpected(int expected) {
+        if (expected == NONE) {
+            return syntaxError("Expected a value and instead saw " +
+                    TOKEN_NAMES[this.peeked]);
+        }
+        return syntaxError("Expected " + TOKEN_NAMES[expected] +
+                " and instead saw " + TOKEN_NAMES[this.peeked]);
+    }
+
+
+    /**
+     * Get the next character, or 0 at the end of the source.
+     */
+    private char next() throws JSONException {
+        if (this.pos == this.limit && !fill()) {
+            return 0;
+        }
+        char c = this.buffer[this.pos++];
+        this.index += 1;
+        if (c == '\n') {
+            this.line += 1;
+            this.character = 1;
+        } else {
+            this.character += 1;
+        }
+        return c;
+    }
+
+
+    /**
+     * Step back over the character just returned by next. Only one
+     * character can be given back, and nothing is given back at the end of
+     * the source.
+     */
+    private void back(char c) {
+        if (c == 0 && this.eof) {
+            return;
+        }
+        this.pos -= 1;
+        this.index -= 1;
+        if (c == '\n') {
+            this.line -= 1;
+        } else {
+            this.character -= 1;
+        }
+    }
+
+
+    /**
+     * Get the next char, skipping whitespace.
+     */
+    private char nextClean() throws JSONException {
+        for (;;) {
+            char c = next();
+            if (c == 0 || c > ' ') {
+                return c;
+            }
+        }
+    }
+
+
+    private boolean fill() throws JSONException {
+        if (this.eof) {
+            return false;
+        }
+        try {
+            int n = this.reader.read(this.buffer, 0, this.buffer.length);
+            if (n <= 0) {
+                this.eof = true;
+                this.pos = 0;
+                this.limit = 0;
+                return false;
+            }
+            this.pos = 0;
+            this.limit = n;
+            return true;
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    /**
+     * Make a JSONException to signal a syntax error.
+     *
+     * @param message The error message.
+     * @return  A JSONException object, suitable for throwing
+     */
+    public JSONException syntaxError(String message) {
+        return new JSONException(message + toString());
+    }
+
+
+    /**
+     * Make a printable string of this JSONReader.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        return " at " + this.index + " [character " + this.character +
+                " line " + this.line + "]";
+    }
+}
@@ -1,11 +1,11 @@
 package org.json;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.concurrent.ExecutorService;
 
 /*
 Copyright (c) 2002 JSON.org
@@ -35,17 +35,73 @@ SOFTWARE.
  * A JSONTokener takes a source string and extracts characters and tokens from
  * it. It is used by the JSONObject and JSONArray constructors to parse
  * JSON source strings.
+ * <p>
+ * Characters are read into a reusable <code>char</code> window rather than
+ * one at a time, runs of plain characters in strings and unquoted values are
+ * copied out of the window in bulk, and integers are parsed straight from the
+ * window without making a String first.
  * @author JSON.org
- * @version 2010-12-24
+ * @version 2012-06-08
  */
 public class JSONTokener {
 
+    /**
+     * Size of the window used when reading from a Reader.
+     */
+    private static final int BUFFER_SIZE = 16384;
+
+    /**
+     * Builders larger than this are not kept for reuse.
+     */
+    private static final int MAX_RECYCLED_BUILDER = 65536;
+
+    /**
+     * Number of slots in the string cache. Must be a power of two.
+     */
+    private static final int STRING_CACHE_SIZE = 4096;
+
+    /**
+     * Keys up to this long are shared through the string cache.
+     */
+    private static final int KEY_INTERN_LIMIT = 64;
+
+    /**
+     * Quoted values up to this long are shared through the string cache
+     * when internValues is set.
+     */
+    private static final int VALUE_INTERN_LIMIT = 32;
+
+    /**
+     * Recently read keys (and short values), by hash of their characters.
+     * A slot holds whichever string was stored in it last, so the cache is
+     * bounded and needs no locking: Strings are immutable, and a reader that
+     * sees a stale slot just makes a new String.
+     */
+    private static final String stringCache[] = new String[STRING_CACHE_SIZE];
+
+    /**
+     * One builder per thread, recycled by nextString, nextTo and nextValue.
+     */
+    @SuppressWarnings({"rawtypes","unchecked"})
+    private static final ThreadLocal builders = new ThreadLocal() {
+        protected Object initialValue() {
+            return new StringBuilder(128);
+        }
+    };
+
+    private char 	buffer[];
+    private int 	bufferPosition;
+    private int 	bufferLimit;
+    private int 	markPosition;
     private int 	character;
 	private boolean eof;
     private int 	index;
     private int 	line;
     private char 	previous;
     private Reader 	reader;
+    private boolean checked;
+    private ExecutorService executor;
+    private boolean internValues;
     private boolean usePrevious;
 
 
@@ -55,8 +111,11 @@ public class JSONTokener {
      * @param reader     A reader.
      */
     public JSONTokener(Reader reader) {
-        this.reader = reader.markSupported() ? 
-        		reader : new BufferedReader(reader);
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.bufferPosition = 0;
+        this.bufferLimit = 0;
+        this.markPosition = -1;
         this.eof = false;
         this.usePrevious = false;
         this.previous = 0;
@@ -75,12 +134,31 @@ public class JSONTokener {
 
 
     /**
-     * Construct a JSONTokener from a string.
+     * Construct a JSONTokener from a string. The string itself is used as
+     * the window, so nothing is copied through a Reader.
      *
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this(new StringReader(s));
+        this((Reader) null);
+        this.buffer = s.toCharArray();
+        this.bufferLimit = this.buffer.length;
+    }
+
+
+    /**
+     * Construct a JSONTokener over part of a char array, which is used as
+     * the window without being copied.
+     *
+     * @param buffer     The characters.
+     * @param start      The index of the first character.
+     * @param end        The index after the last character.
+     */
+    JSONTokener(char buffer[], int start, int end) {
+        this((Reader) null);
+        this.buffer = buffer;
+        this.bufferPosition = start;
+        this.bufferLimit = end;
     }
 
 
@@ -150,10 +228,10 @@ public class JSONTokener {
         	this.usePrevious = false;
             c = this.previous;
         } else {
-	        try {
-	            c = this.reader.read();
-	        } catch (IOException exception) {
-	            throw new JSONException(exception);
+	        if (this.bufferPosition < this.bufferLimit || fill()) {
+	            c = this.buffer[this.bufferPosition++];
+	        } else {
+	            c = -1;
 	        }
 	
 	        if (c <= 0) { // End of stream
@@ -248,9 +326,43 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
+        return nextString(quote, 0);
+    }
+
+
+    /**
+     * Return the characters up to the next close quote character. A string
+     * no longer than internLimit with no escapes is looked up in the string
+     * cache by its characters in the window, so that repeated keys and
+     * values share one String.
+     */
+    private String nextString(char quote, int internLimit)
+            throws JSONException {
+        if (internLimit > 0 && !this.usePrevious && this.previous != '\r') {
+            int start = this.bufferPosition;
+            int end = start;
+            char buf[] = this.buffer;
+            int limit = Math.min(this.bufferLimit, start + internLimit + 1);
+            while (end < limit) {
+                char c = buf[end];
+                if (c == quote) {
+                    String string = cached(buf, start, end - start);
+                    if (end > start) {
+                        skipRun(end);
+                    }
+                    next();
+                    return string;
+                }
+                if (c == '\\' || c < ' ') {
+                    break;
+                }
+                end += 1;
+            }
+        }
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = builder();
         for (;;) {
+            scanRun(sb, quote);
             c = next();
             switch (c) {
             case 0:
@@ -290,7 +402,7 @@ public class JSONTokener {
                 break;
             default:
                 if (c == quote) {
-                    return sb.toString();
+                    return recycle(sb);
                 }
                 sb.append(c);
             }
@@ -298,6 +410,50 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Copy a run of characters that need no special handling inside a
+     * string straight out of the window, stopping before the quote, a
+     * backslash, a line end, a NUL or the end of the window. If sb is null
+     * the run is just skipped.
+     */
+    private void scanRun(StringBuilder sb, char quote) {
+        if (this.usePrevious || this.previous == '\r') {
+            return;
+        }
+        int start = this.bufferPosition;
+        int end = start;
+        char buf[] = this.buffer;
+        int limit = this.bufferLimit;
+        while (end < limit) {
+            char c = buf[end];
+            if (c == quote || c == '\\' || c < ' ') {
+                break;
+            }
+            end += 1;
+        }
+        if (end > start) {
+            if (sb != null) {
+                sb.append(buf, start, end - start);
+            }
+            skipRun(end);
+        }
+    }
+
+
+    /**
+     * Move the window position to end, accounting for the characters
+     * passed over as next() would have. The characters must not include
+     * line ends.
+     */
+    private void skipRun(int end) {
+        int n = end - this.bufferPosition;
+        this.bufferPosition = end;
+        this.index += n;
+        this.character += n;
+        this.previous = this.buffer[end - 1];
+    }
+
+
     /**
      * Get the text up but not including the specified character or the
      * end of line, whichever comes first.
@@ -305,14 +461,14 @@ public class JSONTokener {
      * @return   A string.
      */
     public String nextTo(char delimiter) throws JSONException {
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = builder();
         for (;;) {
             char c = next();
             if (c == delimiter || c == 0 || c == '\n' || c == '\r') {
                 if (c != 0) {
                     back();
                 }
-                return sb.toString().trim();
+                return recycle(sb).trim();
             }
             sb.append(c);
         }
@@ -327,7 +483,7 @@ public class JSONTokener {
      */
     public String nextTo(String delimiters) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = builder();
         for (;;) {
             c = next();
             if (delimiters.indexOf(c) >= 0 || c == 0 ||
@@ -335,13 +491,67 @@ public class JSONTokener {
                 if (c != 0) {
                     back();
                 }
-                return sb.toString().trim();
+                return recycle(sb).trim();
             }
             sb.append(c);
         }
     }
 
 
+    /**
+     * Get the next key of an object. Quoted keys are shared through the
+     * string cache, so the objects parsed from a large text don't each
+     * hold their own copy of the same key.
+     * @throws JSONException If syntax error.
+     *
+     * @return The key.
+     */
+    String nextKey() throws JSONException {
+        char c = nextClean();
+        if (c == '"' || c == '\'') {
+            return nextString(c, KEY_INTERN_LIMIT);
+        }
+        back();
+        return nextValue().toString();
+    }
+
+
+    /**
+     * Share short quoted values, such as tags and enumerated values,
+     * through the same bounded cache as keys. Off by default.
+     * @param internValues true to share short quoted values.
+     */
+    public void setInternValues(boolean internValues) {
+        this.internValues = internValues;
+    }
+
+
+    /**
+     * Get a String for some characters in the window, reusing the one in
+     * the string cache if it holds the same characters.
+     */
+    private static String cached(char buf[], int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i += 1) {
+            h = 31 * h + buf[i];
+        }
+        int slot = (h ^ (h >>> 16)) & (STRING_CACHE_SIZE - 1);
+        String string = stringCache[slot];
+        if (string != null && string.length() == length) {
+            int i = 0;
+            while (i < length && string.charAt(i) == buf[start + i]) {
+                i += 1;
+            }
+            if (i == length) {
+                return string;
+            }
+        }
+        string = new String(buf, start, length);
+        stringCache[slot] = string;
+        return string;
+    }
+
+
     /**
      * Get the next value. The value can be a Boolean, Double, Integer,
      * JSONArray, JSONObject, Long, or String, or the JSONObject.NULL object.
@@ -356,12 +566,15 @@ public class JSONTokener {
         switch (c) {
             case '"':
             case '\'':
-                return nextString(c);
+                return nextString(c, this.internValues ? VALUE_INTERN_LIMIT : 0);
             case '{':
                 back();
                 return new JSONObject(this);
             case '[':
                 back();
+                if (this.executor != null) {
+                    return new JSONArray(this, this.executor);
+                }
                 return new JSONArray(this);
         }
 
@@ -374,14 +587,21 @@ public class JSONTokener {
          * formatting character.
          */
 
-        StringBuffer sb = new StringBuffer();
+        if (c >= ' ' && !this.usePrevious) {
+            Object value = nextUnquotedFromWindow();
+            if (value != null) {
+                return value;
+            }
+        }
+
+        StringBuilder sb = builder();
         while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
             sb.append(c);
             c = next();
         }
         back();
 
-        string = sb.toString().trim();
+        string = recycle(sb).trim();
         if (string.equals("")) {
             throw syntaxError("Missing value");
         }
@@ -389,6 +609,503 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Get the next value without building it. Its syntax is checked as
+     * nextValue would check it, and a JSONLazyValue marking where it lies
+     * in the source is returned. The value is built by nextValue when the
+     * source is not all held in the window.
+     * @throws JSONException If syntax error.
+     *
+     * @return A JSONLazyValue, or an object as returned by nextValue.
+     */
+    Object nextLazyValue() throws JSONException {
+        if (this.reader != null) {
+            return nextValue();
+        }
+        char c = nextClean();
+        if (c == 0) {
+            back();
+            return nextValue();
+        }
+        int start = this.bufferPosition - 1;
+        int end;
+        if (this.checked) {
+            end = findValueEnd(start);
+            if (end > this.bufferPosition) {
+                skipRun(end);
+            }
+        } else {
+            end = skipValue(c);
+        }
+        return new JSONLazyValue(this.buffer, start, end);
+    }
+
+
+    /**
+     * Mark the text as already checked by a lazy parse, so that
+     * nextLazyValue can find the end of each value with a plain scan.
+     * Positions reported for such a text do not count line ends.
+     */
+    void setChecked() {
+        this.checked = true;
+    }
+
+
+    /**
+     * Scan the rest of an array whose '[' has just been read, finding
+     * where its elements start and end without parsing them or moving the
+     * tokener. The separators between elements are checked, but the
+     * elements themselves are not.
+     * @return An array holding the window index just after the closing
+     *  ']', followed by the start and end of each element (-1 and -1 for
+     *  an elided element), or null if the array is not all in the window
+     *  or its structure is not plain enough to scan.
+     */
+    int[] scanArray() {
+        if (this.reader != null || this.usePrevious) {
+            return null;
+        }
+        char buf[] = this.buffer;
+        int limit = this.bufferLimit;
+        int ranges[] = new int[65];
+        int count = 1;
+        int i = skipWhite(this.bufferPosition);
+        if (i < limit && buf[i] == ']') {
+            ranges[0] = i + 1;
+            return trim(ranges, count);
+        }
+        for (;;) {
+            if (count + 2 > ranges.length) {
+                int more[] = new int[ranges.length * 2];
+                System.arraycopy(ranges, 0, more, 0, count);
+                ranges = more;
+            }
+            i = skipWhite(i);
+            if (i >= limit) {
+                return null;
+            }
+            char c = buf[i];
+            if (c == ',') {
+                ranges[count++] = -1;
+                ranges[count++] = -1;
+            } else {
+                if (":]};=#/".indexOf(c) >= 0) {
+                    return null;
+                }
+                int end = findValueEnd(i);
+                if (end > limit) {
+                    return null;
+                }
+                ranges[count++] = i;
+                ranges[count++] = end;
+                i = end;
+            }
+            i = skipWhite(i);
+            if (i >= limit) {
+                return null;
+            }
+            c = buf[i];
+            i += 1;
+            if (c == ',' || c == ';') {
+                i = skipWhite(i);
+                if (i < limit && buf[i] == ']') {
+                    ranges[0] = i + 1;
+                    return trim(ranges, count);
+                }
+            } else if (c == ']') {
+                ranges[0] = i;
+                return trim(ranges, count);
+            } else {
+                return null;
+            }
+        }
+    }
+
+
+    private static int[] trim(int ranges[], int count) {
+        int trimmed[] = new int[count];
+        System.arraycopy(ranges, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+
+    /**
+     * Get the window index of the first character at or after i that
+     * nextClean would not skip.
+     */
+    private int skipWhite(int i) {
+        char buf[] = this.buffer;
+        int limit = this.bufferLimit;
+        while (i < limit && buf[i] > 0 && buf[i] <= ' ') {
+            i += 1;
+        }
+        return i;
+    }
+
+
+    /**
+     * Get the window index of the next character to be read.
+     */
+    int getWindowPosition() {
+        return this.usePrevious ? this.bufferPosition - 1 :
+            this.bufferPosition;
+    }
+
+
+    /**
+     * Move the tokener to a later window index, counting the characters
+     * passed over exactly as next() would.
+     */
+    void advanceTo(int end) {
+        char buf[] = this.buffer;
+        for (int i = this.bufferPosition; i < end; i += 1) {
+            char c = buf[i];
+            this.index += 1;
+            if (this.previous == '\r') {
+                this.line += 1;
+                this.character = c == '\n' ? 0 : 1;
+            } else if (c == '\n') {
+                this.line += 1;
+                this.character = 0;
+            } else {
+                this.character += 1;
+            }
+            this.previous = c;
+        }
+        this.bufferPosition = end;
+    }
+
+
+    /**
+     * Make a tokener over part of this one's window, with the same
+     * settings.
+     */
+    JSONTokener subTokener(int start, int end) {
+        JSONTokener x = new JSONTokener(this.buffer, start, end);
+        x.internValues = this.internValues;
+        return x;
+    }
+
+
+    /**
+     * Parse arrays of this text with a lot of elements in parallel on an
+     * executor. See {@link JSONArray#JSONArray(JSONTokener, ExecutorService)}.
+     * Off by default.
+     * @param executor The executor, or null to parse on the calling thread.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+
+    ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+
+    /**
+     * Find the end of a value in text that has already been checked,
+     * looking only at quotes and brackets.
+     * @param start The window index of the first character of the value.
+     * @return The window index just after the value.
+     */
+    private int findValueEnd(int start) {
+        char buf[] = this.buffer;
+        int limit = this.bufferLimit;
+        int depth = 0;
+        boolean unquoted = false;
+        for (int i = start; i < limit; i += 1) {
+            char c = buf[i];
+            if (unquoted) {
+                if (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+                    continue;
+                }
+                unquoted = false;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+            switch (c) {
+            case '"':
+            case '\'':
+                for (i += 1; i < limit && buf[i] != c; i += 1) {
+                    if (buf[i] == '\\') {
+                        i += 1;
+                    }
+                }
+                if (depth == 0) {
+                    return i + 1;
+                }
+                break;
+            case '{':
+            case '[':
+                depth += 1;
+                break;
+            case '}':
+            case ']':
+                depth -= 1;
+                if (depth == 0) {
+                    return i + 1;
+                }
+                break;
+            case '=':
+                if (i + 1 < limit && buf[i + 1] == '>') {
+                    i += 1;
+                }
+                break;
+            case ',':
+            case ':':
+            case ';':
+                break;
+            default:
+                if (c > ' ') {
+                    unquoted = true;
+                }
+            }
+        }
+        return limit;
+    }
+
+
+    /**
+     * Skip over a value whose first character, c, has just been read,
+     * checking its syntax as nextValue would.
+     * @return The window index just after the value.
+     */
+    private int skipValue(char c) throws JSONException {
+        switch (c) {
+        case '"':
+        case '\'':
+            skipString(c);
+            return this.bufferPosition;
+        case '{':
+            skipObject();
+            return this.bufferPosition;
+        case '[':
+            skipArray();
+            return this.bufferPosition;
+        }
+        int end = this.bufferPosition - 1;
+        boolean blank = true;
+        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+            if (c != ' ') {
+                blank = false;
+            }
+            end = this.bufferPosition;
+            c = next();
+        }
+        back();
+        if (blank) {
+            throw syntaxError("Missing value");
+        }
+        return end;
+    }
+
+
+    /**
+     * Skip the rest of a quoted string, as nextString would read it.
+     */
+    private void skipString(char quote) throws JSONException {
+        char c;
+        for (;;) {
+            scanRun(null, quote);
+            c = next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw syntaxError("Unterminated string");
+            case '\\':
+                c = next();
+                switch (c) {
+                case 'b':
+                case 't':
+                case 'n':
+                case 'f':
+                case 'r':
+                case '"':
+                case '\'':
+                case '\\':
+                case '/':
+                    break;
+                case 'u':
+                    Integer.parseInt(next(4), 16);
+                    break;
+                default:
+                    throw syntaxError("Illegal escape.");
+                }
+                break;
+            default:
+                if (c == quote) {
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Skip the rest of an object, as the JSONObject constructor would
+     * read it.
+     */
+    private void skipObject() throws JSONException {
+        char c;
+        for (;;) {
+            c = nextClean();
+            switch (c) {
+            case 0:
+                throw syntaxError("A JSONObject text must end with '}'");
+            case '}':
+                return;
+            default:
+                skipValue(c);
+            }
+
+// The key is followed by ':'. We will also tolerate '=' or '=>'.
+
+            c = nextClean();
+            if (c == '=') {
+                if (next() != '>') {
+                    back();
+                }
+            } else if (c != ':') {
+                throw syntaxError("Expected a ':' after a key");
+            }
+            skipValue(nextClean());
+
+// Pairs are separated by ','. We will also tolerate ';'.
+
+            switch (nextClean()) {
+            case ';':
+            case ',':
+                if (nextClean() == '}') {
+                    return;
+                }
+                back();
+                break;
+            case '}':
+                return;
+            default:
+                throw syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+
+    /**
+     * Skip the rest of an array, as the JSONArray constructor would read it.
+     */
+    private void skipArray() throws JSONException {
+        if (nextClean() != ']') {
+            back();
+            for (;;) {
+                char c = nextClean();
+                if (c != ',') {
+                    skipValue(c);
+                } else {
+                    back();
+                }
+                switch (nextClean()) {
+                case ';':
+                case ',':
+                    if (nextClean() == ']') {
+                        return;
+                    }
+                    back();
+                    break;
+                case ']':
+                    return;
+                default:
+                    throw syntaxError("Expected a ',' or ']'");
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Read an unquoted value whose characters are all still in the window,
+     * starting with the character just returned by nextClean. Integers are
+     * parsed in place. Returns null, having consumed nothing more, if the
+     * value may run past the end of the window.
+     */
+    private Object nextUnquotedFromWindow() throws JSONException {
+        int start = this.bufferPosition - 1;
+        int end = this.bufferPosition;
+        char buf[] = this.buffer;
+        int limit = this.bufferLimit;
+        while (end < limit && isUnquotedChar(buf[end])) {
+            end += 1;
+        }
+        if ((end >= limit && this.reader != null) ||
+                ",:]}/\\\"[{;=#".indexOf(buf[start]) >= 0) {
+            return null;
+        }
+        if (end > this.bufferPosition) {
+            skipRun(end);
+        }
+
+// Consume and give back the character that ended the value, as the
+// character by character loop does.
+
+        next();
+        back();
+
+        int trimmed = end;
+        while (trimmed > start && buf[trimmed - 1] == ' ') {
+            trimmed -= 1;
+        }
+        Object number = parseInteger(buf, start, trimmed);
+        if (number != null) {
+            return number;
+        }
+        String string = new String(buf, start, trimmed - start).trim();
+        if (string.equals("")) {
+            throw syntaxError("Missing value");
+        }
+        return JSONObject.stringToValue(string);
+    }
+
+
+    private static boolean isUnquotedChar(char c) {
+        return c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0;
+    }
+
+
+    /**
+     * Parse a plain decimal integer (an optional minus sign and up to 18
+     * digits) as JSONObject.stringToValue would, without making a String.
+     * @return An Integer or Long, or null if the text is anything else.
+     */
+    static Object parseInteger(char buf[], int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && buf[i] == '-') {
+            negative = true;
+            i += 1;
+        }
+        int digits = end - i;
+        if (digits < 1 || digits > 18) {
+            return null;
+        }
+        long value = 0;
+        for (; i < end; i += 1) {
+            char c = buf[i];
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value == (int) value) {
+            return Integer.valueOf((int) value);
+        }
+        return Long.valueOf(value);
+    }
+
+
     /**
      * Skip characters until the next character is the requested character.
      * If the requested character is not found, no characters are skipped.
@@ -398,28 +1115,77 @@ public class JSONTokener {
      */
     public char skipTo(char to) throws JSONException {
         char c;
+        int startIndex = this.index;
+        int startCharacter = this.character;
+        int startLine = this.line;
+        this.markPosition = this.bufferPosition;
         try {
-            int startIndex = this.index;
-            int startCharacter = this.character;
-            int startLine = this.line;
-            reader.mark(Integer.MAX_VALUE);
             do {
                 c = next();
                 if (c == 0) {
-                    reader.reset();
+                    this.bufferPosition = this.markPosition;
                     this.index = startIndex;
                     this.character = startCharacter;
                     this.line = startLine;
                     return c;
                 }
             } while (c != to);
-        } catch (IOException exc) {
-            throw new JSONException(exc);
+        } finally {
+            this.markPosition = -1;
         }
 
         back();
         return c;
     }
+
+
+    /**
+     * Read more of the source into the window. Anything from markPosition
+     * on is kept so that skipTo can return to it.
+     * @return false at the end of the source.
+     */
+    private boolean fill() throws JSONException {
+        if (this.reader == null) {
+            return false;
+        }
+        int keep = 0;
+        if (this.markPosition >= 0) {
+            keep = this.bufferLimit - this.markPosition;
+            if (keep == this.buffer.length) {
+                char bigger[] = new char[this.buffer.length * 2];
+                System.arraycopy(this.buffer, this.markPosition, bigger, 0, keep);
+                this.buffer = bigger;
+            } else {
+                System.arraycopy(this.buffer, this.markPosition, this.buffer, 0, keep);
+            }
+            this.markPosition = 0;
+        }
+        try {
+            int n = this.reader.read(this.buffer, keep, this.buffer.length - keep);
+            this.bufferPosition = keep;
+            this.bufferLimit = keep + Math.max(n, 0);
+            return n > 0;
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+
+
+    private static StringBuilder builder() {
+        StringBuilder sb = (StringBuilder) builders.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+
+    @SuppressWarnings({"rawtypes","unchecked"})
+    private static String recycle(StringBuilder sb) {
+        String string = sb.toString();
+        if (sb.capacity() > MAX_RECYCLED_BUILDER) {
+            builders.set(new StringBuilder(128));
+        }
+        return string;
+    }
     
 
     /**
@@ -0,0 +1,190 @@
+package org.json;
+
+/*
+Copyright (c) 2012 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A UTF8Writer encodes characters as UTF-8 straight into its own byte
+ * buffer and hands full buffers to an OutputStream. Unlike an
+ * OutputStreamWriter it does no locking and goes through no CharsetEncoder,
+ * which makes it a cheap target for JSONObject.write and JSONArray.write.
+ * A UTF8Writer is not safe for use by several threads at once.
+ * <p>
+ * Unpaired surrogates are written as <code>?</code>.
+ * @author JSON.org
+ * @version 2012-06-08
+ */
+public class UTF8Writer extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private byte[]       buffer;
+    private int          count;
+    private char         highSurrogate;
+    private OutputStream out;
+
+
+    /**
+     * Make a UTF8Writer.
+     * @param out The stream to write the encoded bytes to.
+     */
+    public UTF8Writer(OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.count = 0;
+        this.highSurrogate = 0;
+    }
+
+
+    /**
+     * Write a single character.
+     */
+    public void write(int c) throws IOException {
+        encode((char) c);
+    }
+
+
+    /**
+     * Write a portion of an array of characters.
+     */
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+        for (int i = off; i < end; i += 1) {
+            char c = cbuf[i];
+            if (c < 0x80 && this.count < BUFFER_SIZE &&
+                    this.highSurrogate == 0) {
+                this.buffer[this.count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+
+    /**
+     * Write a portion of a string.
+     */
+    public void write(String str, int off, int len) throws IOException {
+        int end = off + len;
+        for (int i = off; i < end; i += 1) {
+            char c = str.charAt(i);
+            if (c < 0x80 && this.count < BUFFER_SIZE &&
+                    this.highSurrogate == 0) {
+                this.buffer[this.count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+
+    /**
+     * Write a string.
+     */
+    public void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+
+    /**
+     * Write out the buffered bytes and flush the stream. A dangling high
+     * surrogate is kept in case its partner is written next.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        this.out.flush();
+    }
+
+
+    /**
+     * Flush and close the stream.
+     */
+    public void close() throws IOException {
+        if (this.highSurrogate != 0) {
+            this.highSurrogate = 0;
+            put('?');
+        }
+        flush();
+        this.out.close();
+    }
+
+
+    private void encode(char c) throws IOException {
+        if (this.highSurrogate != 0) {
+            char high = this.highSurrogate;
+            this.highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int code = Character.toCodePoint(high, c);
+                ensure(4);
+                this.buffer[this.count++] = (byte) (0xF0 | (code >> 18));
+                this.buffer[this.count++] = (byte) (0x80 | ((code >> 12) & 0x3F));
+                this.buffer[this.count++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+                this.buffer[this.count++] = (byte) (0x80 | (code & 0x3F));
+                return;
+            }
+            put('?');
+        }
+        if (c < 0x80) {
+            put(c);
+        } else if (c < 0x800) {
+            ensure(2);
+            this.buffer[this.count++] = (byte) (0xC0 | (c >> 6));
+            this.buffer[this.count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            this.highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            put('?');
+        } else {
+            ensure(3);
+            this.buffer[this.count++] = (byte) (0xE0 | (c >> 12));
+            this.buffer[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            this.buffer[this.count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+
+    private void put(char c) throws IOException {
+        ensure(1);
+        this.buffer[this.count++] = (byte) c;
+    }
+
+
+    private void ensure(int n) throws IOException {
+        if (this.count + n > BUFFER_SIZE) {
+            flushBuffer();
+        }
+    }
+
+
+    private void flushBuffer() throws IOException {
+        if (this.count > 0) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+    }
+}
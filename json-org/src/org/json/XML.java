@@ -24,8 +24,16 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.util.Iterator;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 
 /**
  * This provides static methods to convert an XML text into a JSONObject,
@@ -74,27 +82,20 @@ public class XML {
      * @return The escaped string.
      */
     public static String escape(String string) {
-        StringBuffer sb = new StringBuffer();
-        for (int i = 0, length = string.length(); i < length; i++) {
-            char c = string.charAt(i);
-            switch (c) {
-            case '&':
-                sb.append("&amp;");
-                break;
-            case '<':
-                sb.append("&lt;");
-                break;
-            case '>':
-                sb.append("&gt;");
-                break;
-            case '"':
-                sb.append("&quot;");
-                break;
-            default:
-                sb.append(c);
-            }
-        }
-        return sb.toString();
+        return Escaper.XML.escape(string);
+    }
+
+
+    /**
+     * Append a string to an Appendable with the XML escapes of
+     * {@link #escape(String)}, without building an escaped copy.
+     * @param string The string to be escaped.
+     * @param out The Appendable, such as a StringBuilder or Writer.
+     * @throws IOException If the Appendable cannot be written.
+     */
+    public static void escape(String string, Appendable out)
+            throws IOException {
+        Escaper.XML.escape(string, out);
     }
     
     /**
@@ -312,8 +313,12 @@ public class XML {
         }
 
 // If it might be a number, try converting it. If that doesn't work, 
-// return the string.
+// return the string. Text that can't be a number is weeded out first by
+// scanning, since most of it would otherwise cost an exception.
 
+        if (JSONObject.numberKind(string) == JSONObject.NOT_A_NUMBER) {
+            return string;
+        }
         try {
 	        char initial = string.charAt(0);
 	        boolean negative = false;
@@ -330,7 +335,7 @@ public class XML {
                 } else if (string.indexOf('e') < 0 && string.indexOf('E') < 0) {
                     Long myLong = new Long(string);
                     if (myLong.longValue() == myLong.intValue()) {
-                        return new Integer(myLong.intValue());
+                        return Integer.valueOf(myLong.intValue());
                     } else {
                         return myLong;
                     }
@@ -366,6 +371,268 @@ public class XML {
     }
 
 
+    /**
+     * Convert a well-formed XML text read from a Reader into a JSONObject,
+     * following the same rules as {@link #toJSONObject(String)}. The text is
+     * read with a StAX cursor, so it is never held in memory as a whole.
+     * StAX does not tell <code>&lt;a/></code> from <code>&lt;a>&lt;/a></code>,
+     * so both are converted as the second form. An entity the document does
+     * not declare, such as <code>&amp;nbsp;</code>, is kept as written in
+     * content text, but in an attribute value it makes the text not
+     * well-formed, where the String form keeps it there too.
+     * @param reader The source of the XML text.
+     * @return A JSONObject containing the structured data from the XML text.
+     * @throws JSONException If the text is not well-formed or can't be read.
+     */
+    public static JSONObject toJSONObject(Reader reader) throws JSONException {
+        try {
+            return toJSONObject(factory().createXMLStreamReader(reader));
+        } catch (XMLStreamException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Convert a well-formed XML text read from an InputStream into a
+     * JSONObject. The encoding is taken from the XML declaration.
+     * See {@link #toJSONObject(Reader)}.
+     * @param in The source of the XML text.
+     * @return A JSONObject containing the structured data from the XML text.
+     * @throws JSONException If the text is not well-formed or can't be read.
+     */
+    public static JSONObject toJSONObject(InputStream in)
+            throws JSONException {
+        try {
+            return toJSONObject(factory().createXMLStreamReader(in));
+        } catch (XMLStreamException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Convert a well-formed XML text read from a Reader into a JSON array
+     * written on a JSONWriter. Each child element of the document element
+     * is converted on its own, following the same rules as
+     * {@link #toJSONObject(String)}, into a JSONObject holding it under its
+     * tag name, and is written before the next child is read. Only one
+     * child is in memory at a time, so a feed of any length can be
+     * converted. The attributes and text of the document element itself
+     * are dropped.
+     * @param reader The source of the XML text.
+     * @param writer The JSONWriter to write the array on.
+     * @throws JSONException If the text is not well-formed or can't be read,
+     *  or the writer is not ready for a value.
+     */
+    public static void write(Reader reader, JSONWriter writer)
+            throws JSONException {
+        try {
+            write(factory().createXMLStreamReader(reader), writer);
+        } catch (XMLStreamException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Convert a well-formed XML text read from an InputStream into a JSON
+     * array written on a JSONWriter. The encoding is taken from the XML
+     * declaration. See {@link #write(Reader, JSONWriter)}.
+     * @param in The source of the XML text.
+     * @param writer The JSONWriter to write the array on.
+     * @throws JSONException If the text is not well-formed or can't be read,
+     *  or the writer is not ready for a value.
+     */
+    public static void write(InputStream in, JSONWriter writer)
+            throws JSONException {
+        try {
+            write(factory().createXMLStreamReader(in), writer);
+        } catch (XMLStreamException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * The property that makes the JDK's StAX reader report CDATA sections
+     * apart from the text around them.
+     */
+    private static final String REPORT_CDATA =
+        "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+
+    /**
+     * Make a StAX factory that reports names as they are written, with
+     * namespace declarations as ordinary attributes, CDATA sections and
+     * entity references as their own events, and that does not read DTDs or
+     * external entities.
+     */
+    private static XMLInputFactory factory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        if (factory.isPropertySupported(XMLInputFactory.IS_NAMESPACE_AWARE)) {
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,
+                    Boolean.FALSE);
+        }
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, Boolean.TRUE);
+        }
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES,
+                Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                Boolean.FALSE);
+        return factory;
+    }
+
+
+    private static JSONObject toJSONObject(XMLStreamReader reader)
+            throws JSONException, XMLStreamException {
+        JSONObject jo = new JSONObject();
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    parse(reader, jo);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return jo;
+    }
+
+
+    private static void write(XMLStreamReader reader, JSONWriter writer)
+            throws JSONException, XMLStreamException {
+        boolean inDocument = false;
+        JSONObject jo;
+        try {
+            writer.array();
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (inDocument) {
+                        jo = new JSONObject();
+                        parse(reader, jo);
+                        writer.value(jo);
+                    } else {
+                        inDocument = true;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    inDocument = false;
+                    break;
+                }
+            }
+            writer.endArray();
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    /**
+     * Get a qualified name as it is written, whether or not the reader is
+     * namespace aware.
+     */
+    private static String name(String prefix, String localName) {
+        return prefix == null || prefix.length() == 0 ? localName :
+            prefix + ':' + localName;
+    }
+
+
+    /**
+     * Convert the element at the reader's START_ELEMENT, attaching it to the
+     * context, and leave the reader at its END_ELEMENT. This is the StAX
+     * form of parse(XMLTokener, JSONObject, String).
+     * @param reader  The XMLStreamReader, at a START_ELEMENT.
+     * @param context The JSONObject that will include the new material.
+     * @throws JSONException
+     * @throws XMLStreamException If the text is not well-formed.
+     */
+    private static void parse(XMLStreamReader reader, JSONObject context)
+            throws JSONException, XMLStreamException {
+        int           i;
+        JSONObject    jsonobject = new JSONObject();
+        String        string;
+        StringBuilder sb = null;
+        String        tagName = name(reader.getPrefix(),
+                                     reader.getLocalName());
+
+// Attributes, with namespace declarations first if the reader takes them
+// out of the attribute list.
+
+        for (i = 0; i < reader.getNamespaceCount(); i += 1) {
+            string = reader.getNamespacePrefix(i);
+            jsonobject.accumulate(string == null || string.length() == 0 ?
+                    "xmlns" : "xmlns:" + string,
+                    XML.stringToValue(reader.getNamespaceURI(i)));
+        }
+        for (i = 0; i < reader.getAttributeCount(); i += 1) {
+            jsonobject.accumulate(name(reader.getAttributePrefix(i),
+                    reader.getAttributeLocalName(i)),
+                    XML.stringToValue(reader.getAttributeValue(i)));
+        }
+        for (;;) {
+            int event = reader.next();
+
+// Text may come in several pieces. It runs until the next tag, comment,
+// CDATA section or processing instruction, as it does in XMLTokener.
+
+            if (event == XMLStreamConstants.CHARACTERS ||
+                    event == XMLStreamConstants.SPACE) {
+                if (sb == null) {
+                    sb = new StringBuilder();
+                }
+                sb.append(reader.getTextCharacters(), reader.getTextStart(),
+                        reader.getTextLength());
+                continue;
+            }
+
+// The DTD is not read, so an entity other than the five predefined ones is
+// kept as it was written, as XMLTokener.nextEntity does.
+
+            if (event == XMLStreamConstants.ENTITY_REFERENCE) {
+                if (sb == null) {
+                    sb = new StringBuilder();
+                }
+                sb.append('&').append(reader.getLocalName().toLowerCase())
+                        .append(';');
+                continue;
+            }
+            if (sb != null) {
+                string = sb.toString().trim();
+                if (string.length() > 0) {
+                    jsonobject.accumulate("content",
+                            XML.stringToValue(string));
+                }
+                sb = null;
+            }
+            switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                parse(reader, jsonobject);
+                break;
+            case XMLStreamConstants.CDATA:
+                string = reader.getText();
+                if (string.length() > 0) {
+                    jsonobject.accumulate("content", string);
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (jsonobject.length() == 0) {
+                    context.accumulate(tagName, "");
+                } else if (jsonobject.length() == 1 &&
+                        jsonobject.opt("content") != null) {
+                    context.accumulate(tagName, jsonobject.opt("content"));
+                } else {
+                    context.accumulate(tagName, jsonobject);
+                }
+                return;
+            }
+        }
+    }
+
+
     /**
      * Convert a JSONObject into a well-formed, element-normal XML string.
      * @param object A JSONObject.
@@ -2,6 +2,7 @@ package com.brightcove.commons.xml;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
@@ -353,6 +354,30 @@ public class XalanUtils {
 		return prettyPrintWithTrAX(node, prettyPrintXsl);
 	}
 	
+	/**
+	 * <p>
+	 *    Pretty-prints an XML org.w3c.dom Node directly to a stream, without
+	 *    building the whole String first.  Output is UTF-8 encoded.
+	 * </p>
+	 * <p>
+	 *    Useful for writing generated documents (e.g. Videos.toXml()) straight
+	 *    into an FTP data connection.  The stream is not closed.
+	 * </p>
+	 *
+	 * @param node Node to convert
+	 * @param out Stream to write the document to
+	 * @throws TransformerException If node could not be converted
+	 * @throws ParserConfigurationException If node could not be converted
+	 */
+	public static void writeWithTrAX(Node node, OutputStream out) throws TransformerException, ParserConfigurationException {
+		TransformerFactory transformerFactory = TransformerFactory.newInstance();
+		DOMSource ppSrc = new DOMSource(XalanUtils.GeneratePrettyPrintDocument());
+		ppSrc.setSystemId("internal_pretty_print_document");
+		
+		Transformer transformer = transformerFactory.newTransformer(ppSrc);
+		transformer.transform(new DOMSource(node), new StreamResult(out));
+	}
+	
 	/**
 	 * <p>
 	 *    Returns all the nodes selected by the given xpath